@@ -0,0 +1,40 @@
+package frc.lib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The math of HeroSparkPID.calculate, using the deploy PID gains. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeroSparkPIDBenchmark {
+  private static final double P = 0.02;
+  // calculate clamps the integral with 1 / i, so i must be non-zero
+  private static final double I = 0.001;
+  private static final double D = 0;
+  private static final double PERIOD = 0.02;
+
+  private final HeroSparkPID.Calculation pid = new HeroSparkPID.Calculation();
+  private double measurement = 0;
+
+  @Benchmark
+  public double calculate() {
+    measurement += 0.001;
+    if (measurement > 0.65) {
+      measurement = 0;
+    }
+    return pid.next(P, I, D, PERIOD, measurement, 0.65);
+  }
+}
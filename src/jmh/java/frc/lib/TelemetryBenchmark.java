@@ -0,0 +1,81 @@
+package frc.lib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * One loop of Swerve's telemetry (ten numbers and a boolean), through SmartDashboard.putNumber as
+ * before and through {@link Telemetry}. Values either change every loop, the worst case for both,
+ * or hold still, as most of them do when the robot is idle. Needs the desktop natives for
+ * NetworkTables, which ./gradlew jmh provides.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TelemetryBenchmark {
+  private static final String[] KEYS = {
+      "Bench/Odometry/Sample Rate", "Bench/Odometry/Jitter ms", "Bench/Odometry/Dropped Samples",
+      "Bench/NavX Yaw", "Bench/NavX Pitch", "Bench/NavX Roll", "Bench/Acceleration",
+      "Bench/vision added x", "Bench/vision added y", "Bench/Speed Multiplier"
+  };
+  private static final String BOOLEAN_KEY = "Bench/Teleop";
+
+  private final Telemetry.DoubleTelemetry[] numbers = new Telemetry.DoubleTelemetry[KEYS.length];
+  private final Telemetry.BooleanTelemetry bool = Telemetry.bool(BOOLEAN_KEY);
+  private double value = 0;
+
+  public TelemetryBenchmark() {
+    for (int i = 0; i < KEYS.length; i++) {
+      // the deadband Swerve uses for most of its numbers
+      numbers[i] = Telemetry.number(KEYS[i], 0, 0.01);
+    }
+  }
+
+  @Benchmark
+  public void smartDashboardChanging() {
+    value += 0.1;
+    for (int i = 0; i < KEYS.length; i++) {
+      SmartDashboard.putNumber(KEYS[i], value + i);
+    }
+    SmartDashboard.putBoolean(BOOLEAN_KEY, true);
+  }
+
+  @Benchmark
+  public void smartDashboardSteady() {
+    for (int i = 0; i < KEYS.length; i++) {
+      SmartDashboard.putNumber(KEYS[i], i);
+    }
+    SmartDashboard.putBoolean(BOOLEAN_KEY, true);
+  }
+
+  @Benchmark
+  public void telemetryChanging() {
+    value += 0.1;
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i].set(value + i);
+    }
+    bool.set(true);
+  }
+
+  @Benchmark
+  public void telemetrySteady() {
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i].set(i);
+    }
+    bool.set(true);
+  }
+}
@@ -0,0 +1,50 @@
+package frc.lib.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/** Module setpoint optimization: the onboard version, WPILib's, and the in-place one used by SwerveModule. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModuleOptimizeBenchmark {
+  // unwrapped integrated encoder angle, like the angle motor reports after a few turns
+  private double currentAngleDegrees = 725;
+  private final SwerveModuleState desired = new SwerveModuleState(3, Rotation2d.fromDegrees(-120));
+  private final ModuleState desiredInPlace = new ModuleState();
+
+  @Benchmark
+  public SwerveModuleState onboardModuleState() {
+    currentAngleDegrees += 1.7;
+    return OnboardModuleState.optimize(desired, Rotation2d.fromDegrees(currentAngleDegrees));
+  }
+
+  @Benchmark
+  public SwerveModuleState wpilib() {
+    currentAngleDegrees += 1.7;
+    return SwerveModuleState.optimize(desired, Rotation2d.fromDegrees(currentAngleDegrees));
+  }
+
+  @Benchmark
+  public ModuleState inPlace() {
+    currentAngleDegrees += 1.7;
+    desiredInPlace.set(3, -120);
+    desiredInPlace.optimize(currentAngleDegrees);
+    return desiredInPlace;
+  }
+}
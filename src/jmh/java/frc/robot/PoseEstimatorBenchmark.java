@@ -0,0 +1,75 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * The pose estimator as Swerve uses it: one updateWithTime per odometry sample, plus a vision
+ * measurement 50ms in the past once per 20ms loop.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoseEstimatorBenchmark {
+  private static final double ODOMETRY_PERIOD = 1.0 / Constants.Swerve.ODOMETRY_FREQUENCY;
+  private static final int SAMPLES_PER_LOOP = (int) Math.round(0.02 / ODOMETRY_PERIOD);
+
+  private SwerveDrivePoseEstimator estimator;
+  private final SwerveModulePosition[] positions = {
+      new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+  };
+  private double timestamp;
+  private double distance;
+
+  @Setup
+  public void setup() {
+    estimator = new SwerveDrivePoseEstimator(Constants.Swerve.SWERVE_KINEMATICS, new Rotation2d(),
+        positions, Constants.Swerve.INITIAL_POSE, Constants.Swerve.STATE_STD_DEVS,
+        Constants.VisionConstants.VISION_MEASUREMENT_STANDARD_DEVIATIONS);
+    timestamp = 0;
+    distance = 0;
+  }
+
+  private Pose2d step() {
+    timestamp += ODOMETRY_PERIOD;
+    distance += Constants.Swerve.MAX_SPEED * ODOMETRY_PERIOD;
+    for (SwerveModulePosition position : positions) {
+      position.distanceMeters = distance;
+    }
+    return estimator.updateWithTime(timestamp, Rotation2d.fromRadians(timestamp * 0.5), positions);
+  }
+
+  @Benchmark
+  public Pose2d odometrySample() {
+    return step();
+  }
+
+  /** One 20ms loop: every odometry sample from the thread, then a vision measurement. */
+  @Benchmark
+  public Pose2d loopWithVision() {
+    for (int i = 0; i < SAMPLES_PER_LOOP; i++) {
+      step();
+    }
+    estimator.addVisionMeasurement(new Pose2d(distance, 0.05, Rotation2d.fromRadians(timestamp * 0.5)),
+        timestamp - 0.05);
+    return estimator.getEstimatedPosition();
+  }
+}
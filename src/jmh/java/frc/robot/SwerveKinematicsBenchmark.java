@@ -0,0 +1,61 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.lib.math.InPlaceSwerveKinematics;
+import frc.lib.math.ModuleState;
+
+/** The kinematics and desaturation half of Swerve.drive(), old and new. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwerveKinematicsBenchmark {
+  // full stick diagonal plus rotation, so desaturation actually scales
+  private final double xSpeed = Constants.Swerve.MAX_SPEED;
+  private final double ySpeed = Constants.Swerve.MAX_SPEED;
+  private final double rotation = Constants.Swerve.MAX_ANGULAR_VELOCITY;
+  private double yawRadians = 0;
+
+  private final InPlaceSwerveKinematics inPlaceKinematics =
+      new InPlaceSwerveKinematics(Constants.Swerve.MODULE_TRANSLATIONS);
+  private final ModuleState[] states = {
+      new ModuleState(), new ModuleState(), new ModuleState(), new ModuleState()
+  };
+
+  /** What Swerve.drive() did before the allocation-free path. */
+  @Benchmark
+  public void wpilibFieldRelative(Blackhole bh) {
+    yawRadians += 0.01;
+    SwerveModuleState[] swerveModuleStates = Constants.Swerve.SWERVE_KINEMATICS.toSwerveModuleStates(
+        ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, rotation, new Rotation2d(yawRadians)));
+    SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.Swerve.MAX_SPEED);
+    bh.consume(swerveModuleStates);
+  }
+
+  /** What Swerve.drive() does now. */
+  @Benchmark
+  public void inPlaceFieldRelative(Blackhole bh) {
+    yawRadians += 0.01;
+    inPlaceKinematics.toModuleStatesFieldRelative(xSpeed, ySpeed, rotation, yawRadians, states);
+    InPlaceSwerveKinematics.desaturateWheelSpeeds(states, Constants.Swerve.MAX_SPEED);
+    bh.consume(states);
+  }
+}
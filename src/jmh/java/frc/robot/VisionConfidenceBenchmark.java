@@ -0,0 +1,59 @@
+package frc.robot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.subsystems.Vision;
+
+/** Vision.confidenceCalculator for single and multi tag estimates. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VisionConfidenceBenchmark {
+  private final EstimatedRobotPose singleTag = estimate(target(7, 3.2, 0.15));
+  private final EstimatedRobotPose multiTag = estimate(target(7, 3.2, 0.05), target(8, 3.6, 0.08));
+
+  private static PhotonTrackedTarget target(int id, double distance, double ambiguity) {
+    Transform3d cameraToTarget = new Transform3d(distance, 0.3, 0.5, new Rotation3d());
+    List<TargetCorner> corners = List.of(
+        new TargetCorner(0, 0), new TargetCorner(1, 0), new TargetCorner(1, 1), new TargetCorner(0, 1));
+    return new PhotonTrackedTarget(0, 0, 1, 0, id, cameraToTarget, cameraToTarget, ambiguity, corners, corners);
+  }
+
+  private static EstimatedRobotPose estimate(PhotonTrackedTarget... targets) {
+    return new EstimatedRobotPose(new Pose3d(), 0, List.of(targets), PoseStrategy.CLOSEST_TO_REFERENCE_POSE);
+  }
+
+  @Benchmark
+  public Matrix<N3, N1> singleTag() {
+    return Vision.confidenceCalculator(singleTag);
+  }
+
+  @Benchmark
+  public Matrix<N3, N1> multiTag() {
+    return Vision.confidenceCalculator(multiTag);
+  }
+}
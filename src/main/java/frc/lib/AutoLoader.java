@@ -0,0 +1,352 @@
+package frc.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.auto.NamedCommands;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.util.GeometryUtil;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.lib.util.CompiledTrajectory;
+import frc.lib.util.TrajectoryCache;
+
+/**
+ * Lazy replacement for {@link AutoBuilder#buildAutoChooser}. At construction only the names of the
+ * {@code .auto} files in the deploy directory are read. The slow part of building an auto, reading
+ * the {@code .auto} JSON and every {@code .path} it uses and loading the paths' compiled
+ * trajectories from the {@link TrajectoryCache}, happens on background threads in parallel, default
+ * auto first; each path is loaded once however many autos use it. Whenever the chooser changes the
+ * selected auto jumps to the front of the queue.
+ *
+ * <p>Composing the parsed autos into commands registers them with the
+ * {@link edu.wpi.first.wpilibj2.command.CommandScheduler}, which isn't thread safe, so that stays on
+ * the robot thread: {@link #composeNext()} composes one auto per call, from disabledPeriodic.
+ * {@link #getSelected()} only parses or composes anything itself if autonomous starts first.
+ *
+ * <p>Autos are composed the way PathPlanner's AutoBuilder does it: the same command types, named
+ * commands from {@link NamedCommands} and the starting pose, mirrored for the red alliance, reset
+ * before the first command. Paths are followed with the command the {@code followPath} function
+ * gives for the path and its compiled trajectory, which is null for Choreo paths or if it couldn't
+ * be loaded.
+ */
+public class AutoLoader {
+    private static final String NONE = "None";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Consumer<Pose2d> resetPose;
+    private final BooleanSupplier shouldFlip;
+    private final TrajectoryCache trajectoryCache;
+    private final BiFunction<PathPlannerPath, CompiledTrajectory, Command> followPath;
+
+    /* filled in the constructor, read only afterwards */
+    private final Map<String, FutureTask<ParsedAuto>> autos = new LinkedHashMap<>();
+    private final SendableChooser<String> chooser = new SendableChooser<>();
+
+    /* loaded paths by name, shared between autos */
+    private final Map<String, FutureTask<LoadedPath>> paths = new ConcurrentHashMap<>();
+    private final LinkedBlockingDeque<String> queue = new LinkedBlockingDeque<>();
+    private final ExecutorService executor;
+    private final AtomicInteger remaining;
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    /* only touched on the robot thread; null for autos that failed */
+    private final Map<String, Command> composed = new HashMap<>();
+
+    /**
+     * @param defaultAuto     name of the auto selected by default, loaded first
+     * @param threads         background loading threads
+     * @param resetPose       resets odometry to an auto's starting pose, like AutoBuilder's
+     * @param shouldFlip      whether to mirror the starting pose for red, the one AutoBuilder uses
+     * @param trajectoryCache compiled trajectories of the PathPlanner paths
+     * @param followPath      the command following a path, given its compiled trajectory or null
+     */
+    public AutoLoader(String defaultAuto, int threads, Consumer<Pose2d> resetPose, BooleanSupplier shouldFlip,
+            TrajectoryCache trajectoryCache, BiFunction<PathPlannerPath, CompiledTrajectory, Command> followPath) {
+        this.resetPose = resetPose;
+        this.shouldFlip = shouldFlip;
+        this.trajectoryCache = trajectoryCache;
+        this.followPath = followPath;
+        File[] files = new File(Filesystem.getDeployDirectory(), "pathplanner/autos")
+                .listFiles((dir, file) -> file.endsWith(".auto"));
+        String[] names = files == null ? new String[0] : Arrays.stream(files)
+                .map(file -> file.getName().substring(0, file.getName().length() - ".auto".length()))
+                .sorted()
+                .toArray(String[]::new);
+
+        chooser.setDefaultOption(NONE, NONE);
+        for (String name : names) {
+            autos.put(name, new FutureTask<>(() -> parse(name)));
+            queue.add(name);
+            if (name.equals(defaultAuto)) {
+                chooser.setDefaultOption(name, name);
+            } else {
+                chooser.addOption(name, name);
+            }
+        }
+        remaining = new AtomicInteger(names.length);
+        prioritize(defaultAuto);
+        chooser.onChange(this::prioritize);
+
+        // nothing the robot thread waits on is held here, so these can run at the lowest priority
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "AutoLoader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            executor.execute(this::work);
+        }
+        executor.shutdown();
+    }
+
+    private void work() {
+        String name;
+        while ((name = queue.poll()) != null) {
+            // no-op if this auto was already parsed, or is being parsed by someone else
+            autos.get(name).run();
+        }
+    }
+
+    private ParsedAuto parse(String name) throws IOException, ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        JsonNode json = JSON.readTree(new File(Filesystem.getDeployDirectory(), "pathplanner/autos/" + name + ".auto"));
+        ParsedAuto auto = new ParsedAuto(json);
+        collectPaths(auto, auto.command);
+        parseNanos.addAndGet(System.nanoTime() - start);
+        if (remaining.decrementAndGet() == 0) {
+            DataLogManager.log(String.format("AutoLoader: loaded %d autos and %d paths in %.0f ms of worker time",
+                    autos.size(), paths.size(), parseNanos.get() / 1e6));
+        }
+        return auto;
+    }
+
+    /* Loads every path under {@code command}, or waits for the thread already loading it */
+    private void collectPaths(ParsedAuto auto, JsonNode command) throws ExecutionException, InterruptedException {
+        JsonNode data = command.path("data");
+        switch (command.path("type").asText()) {
+            case "path":
+                String pathName = data.path("pathName").asText();
+                FutureTask<LoadedPath> task = paths.computeIfAbsent(pathName,
+                        key -> new FutureTask<>(() -> load(key, auto.choreo)));
+                task.run();
+                auto.paths.put(pathName, task.get());
+                break;
+            case "sequential":
+            case "parallel":
+            case "race":
+            case "deadline":
+                for (JsonNode child : data.path("commands")) {
+                    collectPaths(auto, child);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private LoadedPath load(String pathName, boolean choreo) throws IOException {
+        if (choreo) {
+            return new LoadedPath(PathPlannerPath.fromChoreoTrajectory(pathName), null);
+        }
+        PathPlannerPath path = PathPlannerPath.fromPathFile(pathName);
+        CompiledTrajectory compiled = null;
+        try {
+            compiled = trajectoryCache.load(pathName, path);
+        } catch (IOException | RuntimeException e) {
+            DataLogManager.log("AutoLoader: no compiled trajectory for " + pathName + ": " + e);
+        }
+        return new LoadedPath(path, compiled);
+    }
+
+    private void prioritize(String name) {
+        FutureTask<ParsedAuto> task = autos.get(name);
+        if (task != null && !task.isDone()) {
+            queue.addFirst(name);
+        }
+    }
+
+    public SendableChooser<String> getChooser() {
+        return chooser;
+    }
+
+    /**
+     * Composes one parsed auto that hasn't been yet, the selected one first. Call from the robot
+     * thread while disabled, e.g. disabledPeriodic.
+     */
+    public void composeNext() {
+        String selected = chooser.getSelected();
+        if (isReadyToCompose(selected)) {
+            compose(selected);
+            return;
+        }
+        for (String name : autos.keySet()) {
+            if (isReadyToCompose(name)) {
+                compose(name);
+                return;
+            }
+        }
+    }
+
+    private boolean isReadyToCompose(String name) {
+        FutureTask<ParsedAuto> task = autos.get(name);
+        return task != null && task.isDone() && !composed.containsKey(name);
+    }
+
+    /**
+     * The selected auto. If it hasn't been loaded yet it is loaded (or waited for) now, on the
+     * calling thread, and if it hasn't been composed it is composed now. Call from the robot thread.
+     */
+    public Command getSelected() {
+        return getAuto(chooser.getSelected()).orElseGet(Commands::none);
+    }
+
+    /**
+     * The auto called {@code name}, loaded and composed now if it hasn't been, like
+     * {@link #getSelected()}. Call from the robot thread.
+     *
+     * @return empty if there is no such auto or it failed to load
+     */
+    public Optional<Command> getAuto(String name) {
+        if (!autos.containsKey(name)) {
+            return Optional.empty();
+        }
+        if (!composed.containsKey(name)) {
+            boolean loaded = autos.get(name).isDone();
+            long start = System.nanoTime();
+            compose(name);
+            DataLogManager.log(String.format(loaded
+                    ? "AutoLoader: %s was loaded but not composed, composing took %.0f ms"
+                    : "AutoLoader: %s wasn't loaded yet, loading and composing took %.0f ms",
+                    name, (System.nanoTime() - start) / 1e6));
+        }
+        return Optional.ofNullable(composed.get(name));
+    }
+
+    /**
+     * Blocks until the background threads have loaded every auto, so nothing competes with the
+     * caller for the CPU or the path cache afterwards. For tools and tests, the robot never waits.
+     */
+    public void awaitLoaded() throws InterruptedException {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /* Composes an auto, or records null if it failed */
+    private void compose(String name) {
+        FutureTask<ParsedAuto> task = autos.get(name);
+        task.run();
+        Command command = null;
+        try {
+            ParsedAuto auto = task.get();
+            command = compose(auto, auto.command);
+            if (auto.startingPose != null) {
+                Pose2d startingPose = auto.startingPose;
+                command = Commands.sequence(Commands.runOnce(() -> resetPose.accept(
+                        shouldFlip.getAsBoolean() ? GeometryUtil.flipFieldPose(startingPose) : startingPose)), command);
+            }
+            command.setName(name);
+        } catch (ExecutionException e) {
+            DriverStation.reportError("Failed to load auto " + name + ": " + e.getCause(), e.getCause().getStackTrace());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            command = null;
+            DriverStation.reportError("Failed to build auto " + name + ": " + e, e.getStackTrace());
+        }
+        composed.put(name, command);
+    }
+
+    /* Same command types as PathPlanner's CommandUtil.commandFromJson */
+    private Command compose(ParsedAuto auto, JsonNode command) {
+        JsonNode data = command.path("data");
+        switch (command.path("type").asText()) {
+            case "wait":
+                return Commands.waitSeconds(data.path("waitTime").asDouble());
+            case "named":
+                return NamedCommands.getCommand(data.path("name").asText());
+            case "path":
+                LoadedPath path = auto.paths.get(data.path("pathName").asText());
+                return followPath.apply(path.path, path.compiled);
+            case "sequential":
+                return Commands.sequence(composeAll(auto, data));
+            case "parallel":
+                return Commands.parallel(composeAll(auto, data));
+            case "race":
+                return Commands.race(composeAll(auto, data));
+            case "deadline":
+                Command[] commands = composeAll(auto, data);
+                if (commands.length == 0) {
+                    return Commands.none();
+                }
+                return Commands.deadline(commands[0], Arrays.copyOfRange(commands, 1, commands.length));
+            default:
+                return Commands.none();
+        }
+    }
+
+    private Command[] composeAll(ParsedAuto auto, JsonNode data) {
+        JsonNode children = data.path("commands");
+        Command[] commands = new Command[children.size()];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = compose(auto, children.get(i));
+        }
+        return commands;
+    }
+
+    /** An {@code .auto} file and the paths it uses, parsed off the robot thread. */
+    private static final class ParsedAuto {
+        private final JsonNode command;
+        private final Pose2d startingPose;
+        private final boolean choreo;
+        private final Map<String, LoadedPath> paths = new HashMap<>();
+
+        private ParsedAuto(JsonNode json) {
+            command = json.path("command");
+            choreo = json.path("choreoAuto").asBoolean(false);
+            JsonNode pose = json.path("startingPose");
+            startingPose = pose.isObject()
+                    ? new Pose2d(pose.path("position").path("x").asDouble(), pose.path("position").path("y").asDouble(),
+                            Rotation2d.fromDegrees(pose.path("rotation").asDouble()))
+                    : null;
+        }
+    }
+
+    /** A path and, for PathPlanner paths that could be compiled, its compiled trajectory. */
+    private static final class LoadedPath {
+        private final PathPlannerPath path;
+        private final CompiledTrajectory compiled;
+
+        private LoadedPath(PathPlannerPath path, CompiledTrajectory compiled) {
+            this.path = path;
+            this.compiled = compiled;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Control callbacks that run faster than the 20ms command loop, scheduled with
+ * {@link TimedRobot#addPeriodic}. The command scheduler keeps running commands and telemetry in
+ * robotPeriodic(); subsystems register a callback here for the part of their control that benefits
+ * from a shorter period.
+ *
+ * <p>Data exchange: TimedRobot runs addPeriodic callbacks on the robot thread, between
+ * robotPeriodic() calls, so the two loops never run at the same time and need no locks between
+ * them. A setpoint written by a command is used from the next fast tick on, and anything a fast
+ * tick writes is seen by the next robotPeriodic(). Fast ticks do not read the {@link SensorFrame}
+ * snapshot, which is only refreshed once per slow loop; they read live sensor values instead.
+ * Anything a callback shares with another thread (the odometry thread, vision workers) still needs
+ * that thread's own hand-off.
+ *
+ * <p>Callbacks must not allocate or block: they run hundreds of times a second, and a slow one
+ * delays robotPeriodic(). They only run while the robot is enabled. Both loops are timed with a
+ * {@link LoopTimer}, FastLoop/ here and RobotPeriodic/ in Robot.
+ */
+public final class FastLoop {
+    /** One subsystem's fast control step. */
+    @FunctionalInterface
+    public interface Callback {
+        /** @param timestamp FPGA time of this tick, in seconds */
+        void run(double timestamp);
+    }
+
+    private static final List<Callback> callbacks = new ArrayList<>();
+    private static LoopTimer timer;
+    private static LoopProfiler.Entry profile;
+
+    private FastLoop() {
+    }
+
+    /** Registers a callback. Callbacks run in registration order. */
+    public static void register(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    /**
+     * Schedules the fast loop on the robot. Call once from robotInit.
+     *
+     * @param period seconds between ticks
+     * @param offset seconds after the start of each robotPeriodic() slot, to keep ticks out of it
+     */
+    public static void start(TimedRobot robot, double period, double offset) {
+        timer = new LoopTimer("FastLoop", period);
+        profile = LoopProfiler.entry("FastLoop");
+        robot.addPeriodic(FastLoop::tick, period, offset);
+    }
+
+    /** Runs every callback once. Scheduled by {@link #start}; harnesses stepping the loop call it directly. */
+    public static void tick() {
+        long start = timer.start();
+        long profileStart = profile.start();
+        if (DriverStation.isEnabled()) {
+            double timestamp = Timer.getFPGATimestamp();
+            for (int i = 0; i < callbacks.size(); i++) {
+                callbacks.get(i).run(timestamp);
+            }
+        }
+        profile.stop(profileStart);
+        timer.stop(start);
+    }
+}
@@ -16,11 +16,15 @@ import edu.wpi.first.math.MathSharedStore;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import frc.lib.util.SparkConfig;
+import frc.lib.util.SparkConfigurator;
+import frc.lib.util.SparkReferenceFilter;
 
 /** Wrapper for SparkPidController to add convenience features  
  */
 public class HeroSparkPID implements Sendable {
     SparkPIDController controller;
+    SparkReferenceFilter referenceFilter;
     CANSparkBase spark;
     RelativeEncoder encoder;
     SparkAbsoluteEncoder absoluteEncoder;
@@ -35,18 +39,15 @@ public class HeroSparkPID implements Sendable {
 
     double setpoint;
     double measurement;
-    double prevError;
-    double positionError;
-    double totalError;
     double period = 0.02;
-    double velocityError;
-
+    private final Calculation calculation = new Calculation();
 
     public HeroSparkPID(CANSparkBase spark) {
 
         this.spark = spark;
         this.encoder = spark.getEncoder();
         this.controller = spark.getPIDController();
+        this.referenceFilter = new SparkReferenceFilter(controller);
         p = controller.getP();
         i = controller.getI();
         d = controller.getD();
@@ -54,6 +55,29 @@ public class HeroSparkPID implements Sendable {
 
     }
 
+    /**
+     * For a spark configured by {@link SparkConfigurator}, which owns its gains and feedback
+     * device. They are taken from {@code config} instead of being read from or sent to the spark,
+     * so nothing here races the background configuration or hides a change from its check. The
+     * I zone isn't part of the config and shows as NaN until it is set.
+     */
+    public HeroSparkPID(CANSparkBase spark, SparkConfig config) {
+
+        this.spark = spark;
+        this.encoder = spark.getEncoder();
+        this.controller = spark.getPIDController();
+        this.referenceFilter = new SparkReferenceFilter(controller);
+        p = config.getP();
+        i = config.getI();
+        d = config.getD();
+        ff = config.getFF();
+        iZone = Double.NaN;
+        if (config.usesAbsoluteEncoderFeedback()) {
+            absoluteEncoder = spark.getAbsoluteEncoder(Type.kDutyCycle);
+        }
+
+    }
+
     private double getP() {
         return p;
     }
@@ -127,6 +151,8 @@ public class HeroSparkPID implements Sendable {
         builder.addDoubleProperty("setpoint", this::getFF, this::setFF);
         // pid setter
         // (double s)-> controller.setReference(s, CANSparkBase.ControlType.kVelocity)
+        builder.addDoubleProperty("frames sent", () -> referenceFilter.getFramesSent(), null);
+        builder.addDoubleProperty("frames suppressed", () -> referenceFilter.getFramesSuppressed(), null);
     }
 
     public boolean atSetpoint() {
@@ -147,7 +173,15 @@ public class HeroSparkPID implements Sendable {
         this.reference = value;
         this.controlType = ctrl;
 
-        return controller.setReference(value, ctrl, 0, 0);
+        return referenceFilter.setReference(value, ctrl);
+    }
+
+    /**
+     * Forces the next {@link #setReference} to be sent. Call this after
+     * commanding the spark directly, e.g. with set() or setVoltage().
+     */
+    public void invalidateReference() {
+        referenceFilter.invalidate();
     }
 
     public final void setPID(PIDConstants pidConstants) {
@@ -188,23 +222,34 @@ public class HeroSparkPID implements Sendable {
     */
     @Deprecated(forRemoval = true)
     public double calculate(double measurement, double setpoint) {
-        //i think this works?? - chloe
         this.setpoint = setpoint;
         this.measurement = measurement;
-        prevError = positionError;
+        return calculation.next(p, i, d, period, measurement, setpoint);
+    }
 
+    /** The math behind {@link #calculate}, with no spark, so it can be benchmarked off robot. */
+    static final class Calculation {
+        double prevError;
+        double positionError;
+        double totalError;
+        double velocityError;
 
-        positionError = MathUtil.inputModulus(setpoint - measurement, -1, 1);
+        double next(double p, double i, double d, double period, double measurement, double setpoint) {
+            //i think this works?? - chloe
+            prevError = positionError;
 
-        velocityError = (positionError - prevError) / period;
+            positionError = MathUtil.inputModulus(setpoint - measurement, -1, 1);
 
-        totalError =
-          MathUtil.clamp(
-              totalError + positionError * 0.02,
-              -1 / i,
-              1 / i);
+            velocityError = (positionError - prevError) / period;
 
-        return p * positionError + i * totalError + d * velocityError;
+            totalError =
+              MathUtil.clamp(
+                  totalError + positionError * 0.02,
+                  -1 / i,
+                  1 / i);
+
+            return p * positionError + i * totalError + d * velocityError;
+        }
     }
     public boolean burnFlash(PIDConstants pid) {
         return burnFlash(pid, 0);
@@ -0,0 +1,285 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.BooleanEntry;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Records how long each subsystem periodic() and command execute() takes, so a loop overrun can
+ * be traced to its cause. Timings go into fixed-size log-scale histograms and p50/p95/p99/max are
+ * published to NetworkTables and the DataLog at a low rate.
+ *
+ * <p>Subsystems are timed by {@link ProfiledSubsystem}. Commands are timed from the scheduler's
+ * onCommandExecute callback, which only fires after execute(), so a command's time is measured
+ * from the previous mark (the last subsystem periodic or the previous command). The first
+ * command of a loop therefore also absorbs trigger polling.
+ *
+ * <p>While enabled, the bytes each entry allocates on the robot thread are counted too, from the
+ * JVM's per-thread allocation counter, and published as the mean per call. Totals since
+ * {@link #resetAllocations()} are kept for the allocation tests.
+ *
+ * <p>Toggle with SmartDashboard/Profiler/Enabled. When disabled, the cost is one boolean check per
+ * subsystem and command.
+ */
+public final class LoopProfiler {
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard/Profiler");
+    private static BooleanEntry enabledEntry;
+
+    private static boolean enabled = false;
+    private static double publishPeriod = 1.0;
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static final List<Entry> entryList = new ArrayList<>();
+    private static long lastMark = 0;
+    private static long lastMarkBytes = 0;
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+    private static double lastPublishTime = 0;
+
+    private LoopProfiler() {
+    }
+
+    /**
+     * Hooks the command scheduler. Call once from robotInit.
+     *
+     * @param enabledByDefault initial state of the on/off switch
+     * @param period           seconds between publishes
+     */
+    public static void start(boolean enabledByDefault, double period) {
+        enabled = enabledByDefault;
+        publishPeriod = period;
+        enabledEntry = table.getBooleanTopic("Enabled").getEntry(enabledByDefault);
+        enabledEntry.set(enabled);
+        CommandScheduler.getInstance().onCommandExecute(LoopProfiler::onCommandExecute);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+        if (enabledEntry != null) {
+            enabledEntry.set(enable);
+        }
+    }
+
+    /** Returns the entry for {@code name}, creating it on first use. */
+    public static Entry entry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry(name);
+            entries.put(name, entry);
+            entryList.add(entry);
+        }
+        return entry;
+    }
+
+    /** Every entry created so far. */
+    public static List<Entry> getEntries() {
+        return Collections.unmodifiableList(entryList);
+    }
+
+    /** Zeroes every entry's allocation totals. */
+    public static void resetAllocations() {
+        for (int i = 0; i < entryList.size(); i++) {
+            entryList.get(i).totalBytes = 0;
+            entryList.get(i).totalCalls = 0;
+        }
+    }
+
+    /** Bytes allocated so far by the calling thread, or 0 if the JVM can't tell. */
+    public static long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        return bean;
+    }
+
+    /** Marks the end of a timed section, see the class comment on command timing. */
+    static void mark(long nanos, long bytes) {
+        lastMark = nanos;
+        lastMarkBytes = bytes;
+    }
+
+    private static void onCommandExecute(Command command) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+        if (lastMark != 0) {
+            entry(command.getName()).record(now - lastMark, bytes - lastMarkBytes);
+        }
+        lastMark = now;
+        lastMarkBytes = bytes;
+    }
+
+    /** Polls the on/off switch and publishes at a low rate. Call once per loop. */
+    public static void update() {
+        if (enabledEntry == null) {
+            return;
+        }
+        enabled = enabledEntry.get();
+        lastMark = 0;
+        double now = Timer.getFPGATimestamp();
+        if (!enabled || now - lastPublishTime < publishPeriod) {
+            return;
+        }
+        lastPublishTime = now;
+        for (int i = 0; i < entryList.size(); i++) {
+            entryList.get(i).publish();
+        }
+    }
+
+    /** Timing histogram for one subsystem or command. */
+    public static final class Entry {
+        /* log2 buckets with 8 sub-buckets per octave, from 1us to about 2^20us (1s) */
+        private static final int BUCKETS_PER_OCTAVE = 8;
+        private static final int BUCKET_COUNT = 20 * BUCKETS_PER_OCTAVE;
+
+        private final String name;
+        private final int[] buckets = new int[BUCKET_COUNT];
+        private int count = 0;
+        private long maxNanos = 0;
+        private long windowBytes = 0;
+        private long totalBytes = 0;
+        private long totalCalls = 0;
+        private long startBytes = 0;
+
+        private final DoublePublisher p50Publisher;
+        private final DoublePublisher p95Publisher;
+        private final DoublePublisher p99Publisher;
+        private final DoublePublisher maxPublisher;
+        private final DoublePublisher allocationPublisher;
+        private final DoubleLogEntry p50Log;
+        private final DoubleLogEntry p95Log;
+        private final DoubleLogEntry p99Log;
+        private final DoubleLogEntry maxLog;
+
+        private Entry(String name) {
+            this.name = name;
+            NetworkTable entryTable = table.getSubTable(name);
+            p50Publisher = entryTable.getDoubleTopic("p50 us").publish();
+            p95Publisher = entryTable.getDoubleTopic("p95 us").publish();
+            p99Publisher = entryTable.getDoubleTopic("p99 us").publish();
+            maxPublisher = entryTable.getDoubleTopic("max us").publish();
+            allocationPublisher = entryTable.getDoubleTopic("alloc bytes").publish();
+            String logPrefix = "Profiler/" + name + "/";
+            p50Log = new DoubleLogEntry(DataLogManager.getLog(), logPrefix + "p50 us");
+            p95Log = new DoubleLogEntry(DataLogManager.getLog(), logPrefix + "p95 us");
+            p99Log = new DoubleLogEntry(DataLogManager.getLog(), logPrefix + "p99 us");
+            maxLog = new DoubleLogEntry(DataLogManager.getLog(), logPrefix + "max us");
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Bytes allocated since {@link #resetAllocations()}. */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /** Calls recorded since {@link #resetAllocations()}. */
+        public long getTotalCalls() {
+            return totalCalls;
+        }
+
+        /** @return a start time for {@link #stop}, or 0 if profiling is off */
+        public long start() {
+            if (!enabled) {
+                return 0;
+            }
+            startBytes = allocatedBytes();
+            return System.nanoTime();
+        }
+
+        /** Records the time since {@code startNanos}, if it came from an enabled {@link #start}. */
+        public void stop(long startNanos) {
+            if (startNanos == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long bytes = allocatedBytes();
+            record(now - startNanos, bytes - startBytes);
+            mark(now, bytes);
+        }
+
+        void record(long nanos, long bytes) {
+            windowBytes += bytes;
+            totalBytes += bytes;
+            totalCalls++;
+            double micros = nanos / 1000.0;
+            int bucket = micros <= 1 ? 0 : (int) (Math.log(micros) / Math.log(2) * BUCKETS_PER_OCTAVE);
+            buckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+            count++;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        /** Upper bound, in microseconds, of the bucket holding the given percentile. */
+        private double percentile(double fraction) {
+            int target = (int) Math.ceil(count * fraction);
+            int seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.pow(2, (i + 1) / (double) BUCKETS_PER_OCTAVE);
+                }
+            }
+            return maxNanos / 1000.0;
+        }
+
+        private void publish() {
+            if (count == 0) {
+                return;
+            }
+            double p50 = percentile(0.50);
+            double p95 = percentile(0.95);
+            double p99 = percentile(0.99);
+            double max = maxNanos / 1000.0;
+            p50Publisher.set(p50);
+            p95Publisher.set(p95);
+            p99Publisher.set(p99);
+            maxPublisher.set(max);
+            allocationPublisher.set(windowBytes / (double) count);
+            p50Log.append(p50);
+            p95Log.append(p95);
+            p99Log.append(p99);
+            maxLog.append(max);
+
+            // each publish covers one window
+            Arrays.fill(buckets, 0);
+            count = 0;
+            maxNanos = 0;
+            windowBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+/**
+ * Always-on timing for one periodic loop: the actual period between runs, how long each run took,
+ * the worst of both since the last publish, and how many runs started late. Published through
+ * {@link Telemetry} under {@code <name>/}. Allocation-free, so it can time the fast loop itself.
+ */
+public final class LoopTimer {
+    /* A run that starts this much later than nominal counts as an overrun */
+    private static final double OVERRUN_FACTOR = 1.5;
+    private static final double PUBLISH_PERIOD = 0.5;
+
+    private final long nominalNanos;
+    private long lastStart = 0;
+    private long maxPeriod = 0;
+    private long maxDuration = 0;
+    private long overruns = 0;
+    private long lastPublish = 0;
+
+    private final Telemetry.DoubleTelemetry periodTelemetry;
+    private final Telemetry.DoubleTelemetry durationTelemetry;
+    private final Telemetry.DoubleTelemetry maxPeriodTelemetry;
+    private final Telemetry.DoubleTelemetry maxDurationTelemetry;
+    private final Telemetry.DoubleTelemetry overrunTelemetry;
+
+    /** @param nominalPeriod seconds the loop is scheduled to run every */
+    public LoopTimer(String name, double nominalPeriod) {
+        nominalNanos = (long) (nominalPeriod * 1e9);
+        periodTelemetry = Telemetry.number(name + "/Period ms", PUBLISH_PERIOD, 0.01);
+        durationTelemetry = Telemetry.number(name + "/Duration ms", PUBLISH_PERIOD, 0.01);
+        maxPeriodTelemetry = Telemetry.number(name + "/Max Period ms", PUBLISH_PERIOD, 0.01);
+        maxDurationTelemetry = Telemetry.number(name + "/Max Duration ms", PUBLISH_PERIOD, 0.01);
+        overrunTelemetry = Telemetry.number(name + "/Overruns", PUBLISH_PERIOD, 0);
+    }
+
+    /** @return the start time to pass to {@link #stop} */
+    public long start() {
+        long now = System.nanoTime();
+        if (lastStart != 0) {
+            long period = now - lastStart;
+            maxPeriod = Math.max(maxPeriod, period);
+            if (period > nominalNanos * OVERRUN_FACTOR) {
+                overruns++;
+            }
+            periodTelemetry.set(period / 1e6);
+        }
+        lastStart = now;
+        return now;
+    }
+
+    public void stop(long startNanos) {
+        long now = System.nanoTime();
+        long duration = now - startNanos;
+        maxDuration = Math.max(maxDuration, duration);
+        durationTelemetry.set(duration / 1e6);
+        if (now - lastPublish >= PUBLISH_PERIOD * 1e9) {
+            maxPeriodTelemetry.set(maxPeriod / 1e6);
+            maxDurationTelemetry.set(maxDuration / 1e6);
+            overrunTelemetry.set(overruns);
+            maxPeriod = 0;
+            maxDuration = 0;
+            lastPublish = now;
+        }
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+}
@@ -0,0 +1,177 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Samples odometry inputs on a {@link Notifier} faster than the 20ms scheduler loop and queues
+ * them with their FPGA timestamp. The main loop drains the queue once per cycle and feeds every
+ * sample to the pose estimator.
+ *
+ * <p>Samples are stored in preallocated primitive arrays so the sampling thread never allocates.
+ * If the main loop falls behind by more than {@link #CAPACITY} samples the oldest ones are dropped.
+ */
+public class OdometryThread implements AutoCloseable {
+    /** Fills {@code sample} with the current sensor readings. Runs on the odometry thread. */
+    @FunctionalInterface
+    public interface Sampler {
+        void sample(double[] sample);
+    }
+
+    /** Receives one queued sample. Runs on the thread that called {@link #drain}. */
+    @FunctionalInterface
+    public interface SampleConsumer {
+        void accept(double timestamp, double[] sample);
+    }
+
+    public static final int CAPACITY = 32;
+
+    private final Notifier notifier;
+    private final Sampler sampler;
+    private final double period;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /* queue, guarded by lock */
+    private final double[] timestamps = new double[CAPACITY];
+    private final double[][] samples;
+    private int head = 0;
+    private int size = 0;
+    private long droppedSamples = 0;
+
+    /* only touched on the odometry thread */
+    private final double[] scratch;
+    private double lastSampleTime = -1;
+
+    /* interval statistics since the last drain, guarded by lock */
+    private int intervalCount = 0;
+    private double intervalSum = 0;
+    private double intervalSquaredSum = 0;
+
+    /* only touched on the draining thread */
+    private final double[] drainTimestamps = new double[CAPACITY];
+    private final double[][] drainSamples;
+    private double sampleRate = 0;
+    private double jitter = 0;
+
+    /**
+     * @param sampleWidth number of doubles the sampler writes per sample
+     * @param frequency   sample rate in Hz
+     * @param sampler     reads the sensors, called from the odometry thread
+     */
+    public OdometryThread(int sampleWidth, double frequency, Sampler sampler) {
+        this.sampler = sampler;
+        this.period = 1.0 / frequency;
+        samples = new double[CAPACITY][sampleWidth];
+        drainSamples = new double[CAPACITY][sampleWidth];
+        scratch = new double[sampleWidth];
+        notifier = new Notifier(this::run);
+        notifier.setName("OdometryThread");
+    }
+
+    public void start() {
+        notifier.startPeriodic(period);
+    }
+
+    private void run() {
+        sampler.sample(scratch);
+        double timestamp = Timer.getFPGATimestamp();
+
+        lock.lock();
+        try {
+            int tail = (head + size) % CAPACITY;
+            if (size == CAPACITY) {
+                head = (head + 1) % CAPACITY;
+                droppedSamples++;
+            } else {
+                size++;
+            }
+            timestamps[tail] = timestamp;
+            System.arraycopy(scratch, 0, samples[tail], 0, scratch.length);
+
+            if (lastSampleTime >= 0) {
+                double interval = timestamp - lastSampleTime;
+                intervalCount++;
+                intervalSum += interval;
+                intervalSquaredSum += interval * interval;
+            }
+            lastSampleTime = timestamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands every queued sample to {@code consumer} in the order they were taken, then empties the
+     * queue. The consumer runs outside the lock so a slow estimator update never stalls sampling.
+     */
+    public void drain(SampleConsumer consumer) {
+        int count;
+        lock.lock();
+        try {
+            count = size;
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % CAPACITY;
+                drainTimestamps[i] = timestamps[index];
+                System.arraycopy(samples[index], 0, drainSamples[i], 0, scratch.length);
+            }
+            head = 0;
+            size = 0;
+
+            if (intervalCount > 0) {
+                double mean = intervalSum / intervalCount;
+                sampleRate = 1.0 / mean;
+                jitter = Math.sqrt(Math.max(0, intervalSquaredSum / intervalCount - mean * mean));
+            }
+            intervalCount = 0;
+            intervalSum = 0;
+            intervalSquaredSum = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < count; i++) {
+            consumer.accept(drainTimestamps[i], drainSamples[i]);
+        }
+    }
+
+    /** Throws away any queued samples, e.g. after the odometry has been reset. */
+    public void clear() {
+        lock.lock();
+        try {
+            head = 0;
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Achieved sample rate in Hz, measured over the last drain period. */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Standard deviation of the sample interval in seconds, measured over the last drain period. */
+    public double getJitter() {
+        return jitter;
+    }
+
+    public long getDroppedSamples() {
+        lock.lock();
+        try {
+            return droppedSamples;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        notifier.close();
+    }
+}
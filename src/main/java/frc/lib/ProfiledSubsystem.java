@@ -0,0 +1,33 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * A {@link SubsystemBase} whose periodic work is timed by the {@link LoopProfiler}. Put periodic
+ * code in {@link #profiledPeriodic()} instead of overriding periodic().
+ */
+public abstract class ProfiledSubsystem extends SubsystemBase {
+    private LoopProfiler.Entry profilerEntry;
+
+    @Override
+    public final void periodic() {
+        if (!LoopProfiler.isEnabled()) {
+            profiledPeriodic();
+            return;
+        }
+        if (profilerEntry == null) {
+            profilerEntry = LoopProfiler.entry(getName());
+        }
+        long start = profilerEntry.start();
+        profiledPeriodic();
+        profilerEntry.stop(start);
+    }
+
+    /** This method will be called once per scheduler run. */
+    protected void profiledPeriodic() {
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Reads every registered sensor once at the start of the robot loop, before the command
+ * scheduler runs. Subsystems register a reader that copies their encoders, gyros, DIOs and
+ * camera results into fields, then only use those fields for the rest of the loop. That way each
+ * sensor is read once per loop and every subsystem and command sees the same instant.
+ */
+public final class SensorFrame {
+    /** Copies a subsystem's sensor values into its snapshot fields. */
+    @FunctionalInterface
+    public interface Reader {
+        void readSensors();
+    }
+
+    private static final List<Reader> readers = new ArrayList<>();
+    private static double timestamp = 0;
+
+    private SensorFrame() {
+    }
+
+    /** Registers a reader. Readers run in registration order. */
+    public static void register(Reader reader) {
+        readers.add(reader);
+    }
+
+    /** Takes a new snapshot. Call once per loop from {@code Robot.robotPeriodic()}. */
+    public static void update() {
+        timestamp = Timer.getFPGATimestamp();
+        for (int i = 0; i < readers.size(); i++) {
+            readers.get(i).readSensors();
+        }
+    }
+
+    /** FPGA timestamp of the current snapshot, in seconds. */
+    public static double getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread. When the queue
+ * is full the new item is dropped and counted, so a stalled consumer never blocks the producer.
+ */
+public class SpscQueue<T> {
+    private final Object[] buffer;
+    private final int mask;
+    /* next index to read, only written by the consumer */
+    private final AtomicLong head = new AtomicLong();
+    /* next index to write, only written by the producer */
+    private final AtomicLong tail = new AtomicLong();
+    /* only written by the producer */
+    private volatile long dropped = 0;
+
+    /** @param capacity rounded up to a power of two */
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    /** Producer side. @return false if the queue was full and the item was dropped */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() >= buffer.length) {
+            dropped = dropped + 1;
+            return false;
+        }
+        buffer[(int) (t & mask)] = item;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** Consumer side. @return the oldest item, or null if the queue is empty */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        T item = (T) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.lib;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Typed, cached NetworkTables publishers for per-loop telemetry. Unlike
+ * SmartDashboard.putNumber, the topic is looked up once at construction, values are not boxed, and
+ * a value is only sent when it changed by more than the topic's deadband and the topic's publish
+ * period has elapsed.
+ *
+ * <p>Topics live under SmartDashboard/ so existing dashboard layouts keep working.
+ */
+public final class Telemetry {
+    private static final String ROOT = "SmartDashboard/";
+
+    private static long publishedCount = 0;
+    private static long skippedCount = 0;
+    private static final DoublePublisher publishedPublisher = NetworkTableInstance.getDefault()
+            .getDoubleTopic(ROOT + "Telemetry/Published Per Loop").publish();
+    private static final DoublePublisher skippedPublisher = NetworkTableInstance.getDefault()
+            .getDoubleTopic(ROOT + "Telemetry/Skipped Per Loop").publish();
+
+    private Telemetry() {
+    }
+
+    /** A number published every loop, whenever it changes. */
+    public static DoubleTelemetry number(String key) {
+        return number(key, 0, 0);
+    }
+
+    /**
+     * @param key      SmartDashboard key
+     * @param period   minimum time between publishes, in seconds
+     * @param deadband minimum change that is worth publishing
+     */
+    public static DoubleTelemetry number(String key, double period, double deadband) {
+        return new DoubleTelemetry(
+                NetworkTableInstance.getDefault().getDoubleTopic(ROOT + key).publish(), period, deadband);
+    }
+
+    /** A boolean published whenever it changes. */
+    public static BooleanTelemetry bool(String key) {
+        return bool(key, 0);
+    }
+
+    public static BooleanTelemetry bool(String key, double period) {
+        return new BooleanTelemetry(
+                NetworkTableInstance.getDefault().getBooleanTopic(ROOT + key).publish(), period);
+    }
+
+    /** Publishes how many values were sent and skipped this loop. Call once per loop. */
+    public static void update() {
+        publishedPublisher.set(publishedCount);
+        skippedPublisher.set(skippedCount);
+        publishedCount = 0;
+        skippedCount = 0;
+    }
+
+    private static boolean periodElapsed(double lastPublishTime, double period) {
+        return period <= 0 || SensorFrame.getTimestamp() - lastPublishTime >= period;
+    }
+
+    public static class DoubleTelemetry {
+        private final DoublePublisher publisher;
+        private final double period;
+        private final double deadband;
+        private double lastValue = Double.NaN;
+        private double lastPublishTime = Double.NEGATIVE_INFINITY;
+
+        private DoubleTelemetry(DoublePublisher publisher, double period, double deadband) {
+            this.publisher = publisher;
+            this.period = period;
+            this.deadband = deadband;
+        }
+
+        public void set(double value) {
+            // NaN != NaN, so the first value always goes out
+            boolean changed = !(Math.abs(value - lastValue) <= deadband);
+            if (!changed || !periodElapsed(lastPublishTime, period)) {
+                skippedCount++;
+                return;
+            }
+            publisher.set(value);
+            publishedCount++;
+            lastValue = value;
+            lastPublishTime = SensorFrame.getTimestamp();
+        }
+    }
+
+    public static class BooleanTelemetry {
+        private final BooleanPublisher publisher;
+        private final double period;
+        private boolean published = false;
+        private boolean lastValue;
+        private double lastPublishTime = Double.NEGATIVE_INFINITY;
+
+        private BooleanTelemetry(BooleanPublisher publisher, double period) {
+            this.publisher = publisher;
+            this.period = period;
+        }
+
+        public void set(boolean value) {
+            if ((published && value == lastValue) || !periodElapsed(lastPublishTime, period)) {
+                skippedCount++;
+                return;
+            }
+            publisher.set(value);
+            publishedCount++;
+            published = true;
+            lastValue = value;
+            lastPublishTime = SensorFrame.getTimestamp();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package frc.lib.config;
+
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+
+import edu.wpi.first.math.geometry.Transform3d;
+
+public class VisionCameraConstants {
+  public final String name;
+  public final String dashboardName;
+  public final Transform3d robotToCamera;
+  public final PoseStrategy strategy;
+  public final double trust;
+
+  /**
+   * Vision Camera Constants to be used when creating vision cameras.
+   *
+   * @param name          PhotonVision camera name
+   * @param robotToCamera camera position on the robot
+   * @param strategy      pose strategy. Multi-tag strategies fall back to closest to reference pose
+   * @param trust         multiplier on the measurement standard deviations, larger trusts the camera less
+   */
+  public VisionCameraConstants(String name, Transform3d robotToCamera, PoseStrategy strategy, double trust) {
+    this(name, name, robotToCamera, strategy, trust);
+  }
+
+  /**
+   * @param dashboardName name in the telemetry keys, e.g. to keep existing dashboard layouts working
+   */
+  public VisionCameraConstants(String name, String dashboardName, Transform3d robotToCamera, PoseStrategy strategy,
+      double trust) {
+    this.name = name;
+    this.dashboardName = dashboardName;
+    this.robotToCamera = robotToCamera;
+    this.strategy = strategy;
+    this.trust = trust;
+  }
+}
@@ -0,0 +1,88 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Fixed-capacity ring buffer of timestamped headings, the single-axis counterpart of
+ * {@link PoseHistory}. Used for the gyro on its own, where the fused pose history would also carry
+ * whatever vision has pulled the estimate to.
+ *
+ * <p>Timestamps are FPGA seconds and must be added in increasing order. Headings are radians.
+ */
+public class HeadingHistory {
+  private final int capacity;
+  private final double[] timestamps;
+  private final double[] headings;
+  private int head = 0; // index of the oldest sample
+  private int size = 0;
+
+  public HeadingHistory(int capacity) {
+    this.capacity = capacity;
+    timestamps = new double[capacity];
+    headings = new double[capacity];
+  }
+
+  /** Records a heading. Samples that are not newer than the latest one are ignored. */
+  public synchronized void add(double timestamp, double headingRadians) {
+    if (size > 0 && timestamp <= timestamps[physical(size - 1)]) {
+      return;
+    }
+    int index;
+    if (size == capacity) {
+      index = head;
+      head = (head + 1) % capacity;
+    } else {
+      index = physical(size);
+      size++;
+    }
+    timestamps[index] = timestamp;
+    headings[index] = headingRadians;
+  }
+
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Interpolated heading at {@code timestamp}, wrapped to -pi..pi. Queries outside the stored
+   * window are clamped to the oldest or newest sample.
+   *
+   * @return NaN if the buffer is empty
+   */
+  public synchronized double sample(double timestamp) {
+    if (size == 0) {
+      return Double.NaN;
+    }
+    int low = 0;
+    int high = size - 1;
+    if (timestamp <= timestamps[physical(0)]) {
+      return MathUtil.angleModulus(headings[physical(0)]);
+    }
+    if (timestamp >= timestamps[physical(high)]) {
+      return MathUtil.angleModulus(headings[physical(high)]);
+    }
+    // first logical index with a timestamp >= the query
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[physical(mid)] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int after = physical(low);
+    int before = physical(low - 1);
+    double t = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+    return MathUtil.angleModulus(
+        headings[before] + MathUtil.angleModulus(headings[after] - headings[before]) * t);
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private int physical(int logicalIndex) {
+    return (head + logicalIndex) % capacity;
+  }
+}
@@ -0,0 +1,66 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Allocation-free swerve inverse kinematics. Does the same math as
+ * {@code SwerveDriveKinematics.toSwerveModuleStates} and {@code desaturateWheelSpeeds}, but writes
+ * into caller-owned {@link ModuleState}s.
+ */
+public class InPlaceSwerveKinematics {
+  private final double[] moduleX;
+  private final double[] moduleY;
+
+  public InPlaceSwerveKinematics(Translation2d... moduleLocations) {
+    moduleX = new double[moduleLocations.length];
+    moduleY = new double[moduleLocations.length];
+    for (int i = 0; i < moduleLocations.length; i++) {
+      moduleX[i] = moduleLocations[i].getX();
+      moduleY[i] = moduleLocations[i].getY();
+    }
+  }
+
+  /**
+   * Converts robot relative chassis speeds into module states. Like WPILib, if the chassis is
+   * commanded to stop the module angles are left where they were.
+   */
+  public void toModuleStates(double vx, double vy, double omega, ModuleState[] out) {
+    if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+      for (ModuleState state : out) {
+        state.speedMetersPerSecond = 0.0;
+      }
+      return;
+    }
+    for (int i = 0; i < moduleX.length; i++) {
+      double moduleVx = vx - omega * moduleY[i];
+      double moduleVy = vy + omega * moduleX[i];
+      out[i].speedMetersPerSecond = Math.hypot(moduleVx, moduleVy);
+      out[i].angle.setRadians(Math.atan2(moduleVy, moduleVx));
+    }
+  }
+
+  /**
+   * Converts field relative chassis speeds into module states.
+   *
+   * @param robotAngleRadians The current robot heading.
+   */
+  public void toModuleStatesFieldRelative(
+      double vx, double vy, double omega, double robotAngleRadians, ModuleState[] out) {
+    double cos = Math.cos(robotAngleRadians);
+    double sin = Math.sin(robotAngleRadians);
+    toModuleStates(vx * cos + vy * sin, -vx * sin + vy * cos, omega, out);
+  }
+
+  /** Scales all module speeds down so none exceed {@code maxSpeed}, keeping their ratios. */
+  public static void desaturateWheelSpeeds(ModuleState[] states, double maxSpeed) {
+    double realMaxSpeed = 0;
+    for (ModuleState state : states) {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(state.speedMetersPerSecond));
+    }
+    if (realMaxSpeed > maxSpeed) {
+      for (ModuleState state : states) {
+        state.speedMetersPerSecond = state.speedMetersPerSecond / realMaxSpeed * maxSpeed;
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package frc.lib.math;
+
+import java.nio.ByteBuffer;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.util.struct.Struct;
+
+/**
+ * A mutable {@link SwerveModuleState}. The drive path writes into preallocated instances of this
+ * class every loop instead of allocating new states.
+ *
+ * <p>{@link #struct} serializes to the same wire format as {@code SwerveModuleState.struct}, so
+ * dashboards see no difference.
+ */
+public class ModuleState {
+  public double speedMetersPerSecond;
+  public final MutableAngle angle = new MutableAngle();
+
+  public ModuleState() {}
+
+  public ModuleState(double speedMetersPerSecond, double angleDegrees) {
+    this.speedMetersPerSecond = speedMetersPerSecond;
+    angle.setDegrees(angleDegrees);
+  }
+
+  public ModuleState set(double speedMetersPerSecond, double angleDegrees) {
+    this.speedMetersPerSecond = speedMetersPerSecond;
+    angle.setDegrees(angleDegrees);
+    return this;
+  }
+
+  public ModuleState set(SwerveModuleState state) {
+    speedMetersPerSecond = state.speedMetersPerSecond;
+    angle.set(state.angle);
+    return this;
+  }
+
+  /**
+   * In-place version of {@link SwerveModuleState#optimize}: reverses the wheel instead of turning
+   * more than 90 degrees. Assumes a continuous (wrapping) angle controller.
+   *
+   * @param currentAngleDegrees The current module angle.
+   */
+  public void optimize(double currentAngleDegrees) {
+    double delta = MathUtil.inputModulus(angle.getDegrees() - currentAngleDegrees, -180, 180);
+    if (Math.abs(delta) > 90.0) {
+      speedMetersPerSecond = -speedMetersPerSecond;
+      angle.setDegrees(MathUtil.inputModulus(angle.getDegrees() + 180, -180, 180));
+    }
+  }
+
+  /** Allocates a new {@link SwerveModuleState}. Only use this off the hot path. */
+  public SwerveModuleState toSwerveModuleState() {
+    return new SwerveModuleState(speedMetersPerSecond, angle.toRotation2d());
+  }
+
+  public static final ModuleStateStruct struct = new ModuleStateStruct();
+
+  public static class ModuleStateStruct implements Struct<ModuleState> {
+    @Override
+    public Class<ModuleState> getTypeClass() {
+      return ModuleState.class;
+    }
+
+    @Override
+    public String getTypeString() {
+      return SwerveModuleState.struct.getTypeString();
+    }
+
+    @Override
+    public int getSize() {
+      return kSizeDouble + Rotation2d.struct.getSize();
+    }
+
+    @Override
+    public String getSchema() {
+      return SwerveModuleState.struct.getSchema();
+    }
+
+    @Override
+    public Struct<?>[] getNested() {
+      return new Struct<?>[] {Rotation2d.struct};
+    }
+
+    @Override
+    public ModuleState unpack(ByteBuffer bb) {
+      ModuleState state = new ModuleState();
+      state.speedMetersPerSecond = bb.getDouble();
+      state.angle.setRadians(bb.getDouble());
+      return state;
+    }
+
+    @Override
+    public void pack(ByteBuffer bb, ModuleState value) {
+      bb.putDouble(value.speedMetersPerSecond);
+      bb.putDouble(value.angle.getRadians());
+    }
+  }
+}
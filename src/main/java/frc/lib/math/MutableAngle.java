@@ -0,0 +1,65 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * A mutable counterpart to {@link Rotation2d} for the 20ms control path. Setting a new value
+ * recomputes the cached sine and cosine instead of allocating a new object.
+ */
+public class MutableAngle {
+  private double radians = 0;
+  private double cos = 1;
+  private double sin = 0;
+
+  public MutableAngle() {}
+
+  public MutableAngle(double radians) {
+    setRadians(radians);
+  }
+
+  public MutableAngle setRadians(double radians) {
+    this.radians = radians;
+    cos = Math.cos(radians);
+    sin = Math.sin(radians);
+    return this;
+  }
+
+  public MutableAngle setDegrees(double degrees) {
+    return setRadians(Math.toRadians(degrees));
+  }
+
+  public MutableAngle set(MutableAngle other) {
+    radians = other.radians;
+    cos = other.cos;
+    sin = other.sin;
+    return this;
+  }
+
+  public MutableAngle set(Rotation2d rotation) {
+    radians = rotation.getRadians();
+    cos = rotation.getCos();
+    sin = rotation.getSin();
+    return this;
+  }
+
+  public double getRadians() {
+    return radians;
+  }
+
+  public double getDegrees() {
+    return Math.toDegrees(radians);
+  }
+
+  public double getCos() {
+    return cos;
+  }
+
+  public double getSin() {
+    return sin;
+  }
+
+  /** Allocates a new {@link Rotation2d}. Only use this off the hot path. */
+  public Rotation2d toRotation2d() {
+    return new Rotation2d(radians);
+  }
+}
@@ -0,0 +1,152 @@
+package frc.lib.math;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Fixed-capacity ring buffer of timestamped robot poses, used to answer "where was the robot at
+ * time t" for latency compensation. Poses are stored in primitive arrays so recording a sample
+ * never allocates; lookups are a binary search followed by linear interpolation.
+ *
+ * <p>Timestamps are FPGA seconds and must be added in increasing order.
+ */
+public class PoseHistory {
+  private final int capacity;
+  private final double[] timestamps;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] thetas;
+  private int head = 0; // index of the oldest sample
+  private int size = 0;
+
+  public PoseHistory(int capacity) {
+    this.capacity = capacity;
+    timestamps = new double[capacity];
+    xs = new double[capacity];
+    ys = new double[capacity];
+    thetas = new double[capacity];
+  }
+
+  /** Records a pose. Samples that are not newer than the latest one are ignored. */
+  public synchronized void add(double timestamp, double x, double y, double thetaRadians) {
+    if (size > 0 && timestamp <= timestamps[physical(size - 1)]) {
+      return;
+    }
+    int index;
+    if (size == capacity) {
+      index = head;
+      head = (head + 1) % capacity;
+    } else {
+      index = physical(size);
+      size++;
+    }
+    timestamps[index] = timestamp;
+    xs[index] = x;
+    ys[index] = y;
+    thetas[index] = thetaRadians;
+  }
+
+  public void add(double timestamp, Pose2d pose) {
+    add(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+  }
+
+  /**
+   * Moves every sample from {@code timestamp} on by the correction that took the newest pose from
+   * {@code before} to {@code after}. A pose estimator applies a vision measurement at its timestamp
+   * and replays odometry from there, so every later pose moves by that same field-relative
+   * transform; this keeps the history in step with the corrected estimate.
+   */
+  public synchronized void correct(double timestamp, Pose2d before, Pose2d after) {
+    double rotation = MathUtil.angleModulus(after.getRotation().getRadians() - before.getRotation().getRadians());
+    double cos = Math.cos(rotation);
+    double sin = Math.sin(rotation);
+    for (int i = size - 1; i >= 0; i--) {
+      int index = physical(i);
+      if (timestamps[index] < timestamp) {
+        break;
+      }
+      double x = xs[index] - before.getX();
+      double y = ys[index] - before.getY();
+      xs[index] = after.getX() + x * cos - y * sin;
+      ys[index] = after.getY() + x * sin + y * cos;
+      thetas[index] = MathUtil.angleModulus(thetas[index] + rotation);
+    }
+  }
+
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Writes the interpolated pose at {@code timestamp} into {@code out} as {x, y, theta}. Queries
+   * outside the stored window are clamped to the oldest or newest sample.
+   *
+   * @return false if the buffer is empty
+   */
+  public synchronized boolean sample(double timestamp, double[] out) {
+    if (size == 0) {
+      return false;
+    }
+    // first logical index with a timestamp >= the query
+    int low = 0;
+    int high = size - 1;
+    if (timestamp <= timestamps[physical(0)]) {
+      copy(physical(0), out);
+      return true;
+    }
+    if (timestamp >= timestamps[physical(high)]) {
+      copy(physical(high), out);
+      return true;
+    }
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[physical(mid)] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int after = physical(low);
+    int before = physical(low - 1);
+    double t = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+    out[0] = MathUtil.interpolate(xs[before], xs[after], t);
+    out[1] = MathUtil.interpolate(ys[before], ys[after], t);
+    out[2] = thetas[before] + MathUtil.angleModulus(thetas[after] - thetas[before]) * t;
+    return true;
+  }
+
+  /** Interpolated pose at {@code timestamp}, or empty if nothing has been recorded yet. */
+  public Optional<Pose2d> getPose(double timestamp) {
+    double[] out = new double[3];
+    if (!sample(timestamp, out)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Pose2d(out[0], out[1], new Rotation2d(out[2])));
+  }
+
+  public synchronized double getOldestTimestamp() {
+    return size == 0 ? Double.NaN : timestamps[physical(0)];
+  }
+
+  public synchronized double getNewestTimestamp() {
+    return size == 0 ? Double.NaN : timestamps[physical(size - 1)];
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private int physical(int logicalIndex) {
+    return (head + logicalIndex) % capacity;
+  }
+
+  private void copy(int index, double[] out) {
+    out[0] = xs[index];
+    out[1] = ys[index];
+    out[2] = thetas[index];
+  }
+}
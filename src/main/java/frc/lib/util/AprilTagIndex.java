@@ -0,0 +1,90 @@
+package frc.lib.util;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+/**
+ * The field layout flattened into dense arrays indexed by fiducial ID, built once so lookups are
+ * an array read instead of {@link AprilTagFieldLayout#getTagPose(int)}'s search and
+ * {@link java.util.Optional}.
+ *
+ * <p>Sets of tags are passed around as a {@code long} bit mask (bit {@code id} set), which lets a
+ * measurement carry the tags it used without allocating. {@link #toPoses(long)} turns a mask back
+ * into a {@code Pose3d[]} from a preallocated buffer, one per tag count, for the struct array
+ * publishers. {@link #MAX_ID} is the highest ID a {@code long} has a bit for; tags with higher IDs
+ * are left out of the index.
+ */
+public class AprilTagIndex {
+    public static final int MAX_ID = Long.SIZE - 1;
+
+    private final Pose3d[] poses3d = new Pose3d[MAX_ID + 1];
+    private final Pose2d[] poses2d = new Pose2d[MAX_ID + 1];
+    private final Translation3d[] translations = new Translation3d[MAX_ID + 1];
+    private final long validMask;
+
+    /* buffers[n] has length n, reused by toPoses() */
+    private final Pose3d[][] buffers;
+
+    public AprilTagIndex(AprilTagFieldLayout layout) {
+        long mask = 0;
+        for (AprilTag tag : layout.getTags()) {
+            if (tag.ID < 0 || tag.ID > MAX_ID) {
+                continue;
+            }
+            poses3d[tag.ID] = tag.pose;
+            poses2d[tag.ID] = tag.pose.toPose2d();
+            translations[tag.ID] = tag.pose.getTranslation();
+            mask |= 1L << tag.ID;
+        }
+        validMask = mask;
+
+        int count = Long.bitCount(mask);
+        buffers = new Pose3d[count + 1][];
+        for (int i = 0; i <= count; i++) {
+            buffers[i] = new Pose3d[i];
+        }
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id <= MAX_ID && poses3d[id] != null;
+    }
+
+    /** @return the tag's field pose, or null if it isn't on the field */
+    public Pose3d getPose3d(int id) {
+        return contains(id) ? poses3d[id] : null;
+    }
+
+    /** @return the tag's field pose projected to the floor, or null if it isn't on the field */
+    public Pose2d getPose2d(int id) {
+        return contains(id) ? poses2d[id] : null;
+    }
+
+    /** @return the tag's field position, or null if it isn't on the field */
+    public Translation3d getTranslation(int id) {
+        return contains(id) ? translations[id] : null;
+    }
+
+    /** @return {@code mask} with {@code id} added, unchanged if the tag isn't on the field */
+    public long addToMask(long mask, int id) {
+        return contains(id) ? mask | (1L << id) : mask;
+    }
+
+    /**
+     * Field poses of every tag in {@code mask}, in ID order. The returned array is a shared buffer
+     * that is overwritten by the next call, so only use it from one thread and don't keep it.
+     */
+    public Pose3d[] toPoses(long mask) {
+        mask &= validMask;
+        Pose3d[] out = buffers[Long.bitCount(mask)];
+        int i = 0;
+        while (mask != 0) {
+            int id = Long.numberOfTrailingZeros(mask);
+            out[i++] = poses3d[id];
+            mask &= mask - 1;
+        }
+        return out;
+    }
+}
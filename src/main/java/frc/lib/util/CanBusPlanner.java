@@ -0,0 +1,324 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+
+/**
+ * Plans the status frames of every device on the CAN bus from what each one declares it needs,
+ * and projects the resulting bus load so it can be checked against a budget before the robot ever
+ * runs. Devices apply their part of the plan with {@link #apply(CANSparkMax, Mode)} and
+ * {@link #apply(CANcoder, Mode)}, usually through a {@link CanProfileManager}.
+ *
+ * <p>Spark MAX frames that no declared signal needs are slowed to {@link #SPARK_UNUSED_PERIOD_MS}.
+ * A frame carrying several needed signals runs at the fastest rate any of them asks for. CANcoder
+ * signals are counted as one frame each, and undeclared ones are turned off with
+ * optimizeBusUtilization().
+ *
+ * <p>Every {@link Mode} has its own profile. A signal declared without a mode is needed in all of
+ * them; one declared with a mode is only added to that profile. {@link #limit(Mode, double)} caps
+ * every rate in a profile, and no setpoints are counted while disabled.
+ */
+public class CanBusPlanner {
+  public static final double BUS_BITS_PER_SECOND = 1_000_000;
+  // 29 bit ID, 8 byte payload, with worst case bit stuffing
+  public static final double BITS_PER_FRAME = 150;
+  public static final int SPARK_UNUSED_PERIOD_MS = 500;
+
+  /** Robot modes with their own frame rate profile. */
+  public enum Mode {
+    DISABLED,
+    AUTONOMOUS,
+    TELEOP,
+    TEST,
+    SYSID
+  }
+
+  /** What a Spark MAX can report, and the status frame that carries it. */
+  public enum SparkSignal {
+    FAULTS_AND_OUTPUT(PeriodicFrame.kStatus0),
+    VELOCITY(PeriodicFrame.kStatus1),
+    POSITION(PeriodicFrame.kStatus2),
+    ANALOG(PeriodicFrame.kStatus3),
+    ALTERNATE_ENCODER(PeriodicFrame.kStatus4),
+    ABSOLUTE_POSITION(PeriodicFrame.kStatus5),
+    ABSOLUTE_VELOCITY(PeriodicFrame.kStatus6);
+
+    public final PeriodicFrame frame;
+
+    SparkSignal(PeriodicFrame frame) {
+      this.frame = frame;
+    }
+  }
+
+  public enum CanCoderSignal {
+    ABSOLUTE_POSITION,
+    POSITION,
+    VELOCITY
+  }
+
+  /** One device's share of the bus. */
+  public abstract static class Device {
+    public final String name;
+    public final int id;
+
+    Device(String name, int id) {
+      this.name = name;
+      this.id = id;
+    }
+
+    /** Projected frames per second in a mode, status and control together. */
+    public abstract double framesPerSecond(Mode mode);
+  }
+
+  public class Spark extends Device {
+    private final EnumMap<Mode, EnumMap<PeriodicFrame, Integer>> periodsMs = new EnumMap<>(Mode.class);
+    private double controlHz = 0;
+
+    Spark(String name, int id) {
+      super(name, id);
+      for (Mode mode : Mode.values()) {
+        EnumMap<PeriodicFrame, Integer> periods = new EnumMap<>(PeriodicFrame.class);
+        for (PeriodicFrame frame : PeriodicFrame.values()) {
+          periods.put(frame, SPARK_UNUSED_PERIOD_MS);
+        }
+        periodsMs.put(mode, periods);
+      }
+    }
+
+    /** Declares a signal the code reads in every mode, and how often it must be fresh. */
+    public Spark needs(SparkSignal signal, double hz) {
+      for (Mode mode : Mode.values()) {
+        needs(signal, hz, mode);
+      }
+      return this;
+    }
+
+    /** Declares a signal only needed in one mode. */
+    public Spark needs(SparkSignal signal, double hz, Mode mode) {
+      periodsMs.get(mode).merge(signal.frame, periodMs(hz), Math::min);
+      return this;
+    }
+
+    /** Declares how often the robot sends this controller setpoints while enabled. */
+    public Spark control(double hz) {
+      controlHz = hz;
+      return this;
+    }
+
+    public int getPeriodMs(PeriodicFrame frame, Mode mode) {
+      int period = periodsMs.get(mode).get(frame);
+      return Math.max(period, periodMs(getLimit(mode)));
+    }
+
+    @Override
+    public double framesPerSecond(Mode mode) {
+      double total = mode == Mode.DISABLED ? 0 : controlHz;
+      for (PeriodicFrame frame : PeriodicFrame.values()) {
+        total += 1000.0 / getPeriodMs(frame, mode);
+      }
+      return total;
+    }
+  }
+
+  public class CanCoder extends Device {
+    private final EnumMap<Mode, EnumMap<CanCoderSignal, Double>> rates = new EnumMap<>(Mode.class);
+
+    CanCoder(String name, int id) {
+      super(name, id);
+      for (Mode mode : Mode.values()) {
+        rates.put(mode, new EnumMap<>(CanCoderSignal.class));
+      }
+    }
+
+    public CanCoder needs(CanCoderSignal signal, double hz) {
+      for (Mode mode : Mode.values()) {
+        needs(signal, hz, mode);
+      }
+      return this;
+    }
+
+    public CanCoder needs(CanCoderSignal signal, double hz, Mode mode) {
+      rates.get(mode).merge(signal, hz, Math::max);
+      return this;
+    }
+
+    /** Whether any mode's profile uses the signal. */
+    public boolean isDeclared(CanCoderSignal signal) {
+      for (EnumMap<CanCoderSignal, Double> modeRates : rates.values()) {
+        if (modeRates.containsKey(signal)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public double getRate(CanCoderSignal signal, Mode mode) {
+      return Math.min(rates.get(mode).getOrDefault(signal, 0.0), getLimit(mode));
+    }
+
+    @Override
+    public double framesPerSecond(Mode mode) {
+      double total = 0;
+      for (CanCoderSignal signal : CanCoderSignal.values()) {
+        total += getRate(signal, mode);
+      }
+      return total;
+    }
+  }
+
+  /** Anything else on the bus, by its known frame rate. */
+  public static class Other extends Device {
+    private final double framesPerSecond;
+
+    Other(String name, int id, double framesPerSecond) {
+      super(name, id);
+      this.framesPerSecond = framesPerSecond;
+    }
+
+    @Override
+    public double framesPerSecond(Mode mode) {
+      return framesPerSecond;
+    }
+  }
+
+  private final double budget;
+  private final List<Device> devices = new ArrayList<>();
+  private final Map<Integer, Spark> sparks = new HashMap<>();
+  private final Map<Integer, CanCoder> canCoders = new HashMap<>();
+  private final EnumMap<Mode, Double> limits = new EnumMap<>(Mode.class);
+
+  /** @param budget highest allowed projected utilization in any mode, 0 to 1 */
+  public CanBusPlanner(double budget) {
+    this.budget = budget;
+  }
+
+  public Spark spark(String name, int id) {
+    Spark spark = new Spark(name, id);
+    devices.add(spark);
+    sparks.put(id, spark);
+    return spark;
+  }
+
+  public CanCoder canCoder(String name, int id) {
+    CanCoder canCoder = new CanCoder(name, id);
+    devices.add(canCoder);
+    canCoders.put(id, canCoder);
+    return canCoder;
+  }
+
+  public CanBusPlanner other(String name, int id, double framesPerSecond) {
+    devices.add(new Other(name, id, framesPerSecond));
+    return this;
+  }
+
+  /** Declares a Spark MAX signal needed from every Spark in one mode. */
+  public CanBusPlanner allSparksNeed(SparkSignal signal, double hz, Mode mode) {
+    for (Spark spark : sparks.values()) {
+      spark.needs(signal, hz, mode);
+    }
+    return this;
+  }
+
+  /** Caps every declared rate in a mode. Frames nothing needs stay at their unused period. */
+  public CanBusPlanner limit(Mode mode, double maxHz) {
+    limits.put(mode, maxHz);
+    return this;
+  }
+
+  private double getLimit(Mode mode) {
+    return limits.getOrDefault(mode, Double.POSITIVE_INFINITY);
+  }
+
+  private static int periodMs(double hz) {
+    return (int) Math.max(1, Math.floor(1000.0 / hz));
+  }
+
+  public double getUtilization(Mode mode) {
+    double frames = 0;
+    for (Device device : devices) {
+      frames += device.framesPerSecond(mode);
+    }
+    return frames * BITS_PER_FRAME / BUS_BITS_PER_SECOND;
+  }
+
+  /** Whether every mode's profile fits the budget. */
+  public boolean isWithinBudget() {
+    for (Mode mode : Mode.values()) {
+      if (getUtilization(mode) > budget) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Frames per second per device in every mode, and each mode's total against the budget. */
+  public String report() {
+    StringBuilder report = new StringBuilder(String.format("CAN bus plan, frames/s, budget %.1f%%%n", budget * 100));
+    report.append(String.format("  %-24s %3s", "device", "id"));
+    for (Mode mode : Mode.values()) {
+      report.append(String.format(" %10s", mode));
+    }
+    report.append(System.lineSeparator());
+    for (Device device : devices) {
+      report.append(String.format("  %-24s %3d", device.name, device.id));
+      for (Mode mode : Mode.values()) {
+        report.append(String.format(" %10.1f", device.framesPerSecond(mode)));
+      }
+      report.append(System.lineSeparator());
+    }
+    report.append(String.format("  %-28s", "utilization %"));
+    for (Mode mode : Mode.values()) {
+      report.append(String.format(" %9.1f%s", getUtilization(mode) * 100, getUtilization(mode) > budget ? "!" : " "));
+    }
+    report.append(System.lineSeparator());
+    if (!isWithinBudget()) {
+      report.append("  OVER BUDGET").append(System.lineSeparator());
+    }
+    return report.toString();
+  }
+
+  /** Sets every status frame period of a Spark MAX from its profile for a mode. */
+  public void apply(CANSparkMax motor, Mode mode) {
+    Spark spark = sparks.get(motor.getDeviceId());
+    if (spark == null) {
+      throw new IllegalArgumentException("Spark MAX " + motor.getDeviceId() + " is not in the CAN bus plan");
+    }
+    for (PeriodicFrame frame : PeriodicFrame.values()) {
+      motor.setPeriodicFramePeriod(frame, spark.getPeriodMs(frame, mode));
+    }
+  }
+
+  /** Sets the CANcoder signal rates from its profile for a mode and turns the rest off. */
+  public void apply(CANcoder encoder, Mode mode) {
+    CanCoder canCoder = canCoders.get(encoder.getDeviceID());
+    if (canCoder == null) {
+      throw new IllegalArgumentException("CANcoder " + encoder.getDeviceID() + " is not in the CAN bus plan");
+    }
+    for (CanCoderSignal signal : CanCoderSignal.values()) {
+      // a rate of 0 turns off a signal another mode needs
+      if (canCoder.isDeclared(signal)) {
+        signal(encoder, signal).setUpdateFrequency(canCoder.getRate(signal, mode));
+      }
+    }
+    encoder.optimizeBusUtilization();
+  }
+
+  private static BaseStatusSignal signal(CANcoder encoder, CanCoderSignal signal) {
+    switch (signal) {
+      case ABSOLUTE_POSITION:
+        return encoder.getAbsolutePosition();
+      case POSITION:
+        return encoder.getPosition();
+      default:
+        return encoder.getVelocity();
+    }
+  }
+}
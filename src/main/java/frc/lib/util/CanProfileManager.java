@@ -0,0 +1,117 @@
+package frc.lib.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.revrobotics.CANSparkMax;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.lib.util.CanBusPlanner.Mode;
+
+/**
+ * Switches every registered device to the {@link CanBusPlanner} profile of the current robot mode.
+ * Frame periods are sent by one background thread, since CANcoder signal updates block on the
+ * bus; a mode change only flags the thread, so it never stalls the loop. Changes that arrive while
+ * the thread is busy are coalesced and it always finishes on the latest mode.
+ *
+ * <p>Devices start in the {@link Mode#DISABLED} profile, the mode the robot boots in. Devices are
+ * kept by CAN ID, so registering one again (e.g. from a {@link SparkConfig#always} hook, which runs
+ * on every configuration attempt) only re-sends its current profile.
+ */
+public class CanProfileManager {
+  private final CanBusPlanner plan;
+  private final Map<Integer, CANSparkMax> sparks = new ConcurrentHashMap<>();
+  private final Map<Integer, CANcoder> canCoders = new ConcurrentHashMap<>();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "CanProfileManager");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final AtomicBoolean switchPending = new AtomicBoolean();
+
+  private volatile Mode robotMode = Mode.DISABLED;
+  private volatile boolean sysIdRunning = false;
+  /* Only touched by the executor thread */
+  private Mode appliedMode = Mode.DISABLED;
+
+  public CanProfileManager(CanBusPlanner plan) {
+    this.plan = plan;
+  }
+
+  public CanBusPlanner getPlan() {
+    return plan;
+  }
+
+  /** Adds a Spark MAX, or replaces the one with its ID, and sends it the profile every other device is on. */
+  public void register(CANSparkMax spark) {
+    sparks.put(spark.getDeviceId(), spark);
+    executor.execute(() -> applySafely(spark.getDeviceId(), () -> plan.apply(spark, appliedMode)));
+  }
+
+  public void register(CANcoder canCoder) {
+    canCoders.put(canCoder.getDeviceID(), canCoder);
+    executor.execute(() -> applySafely(canCoder.getDeviceID(), () -> plan.apply(canCoder, appliedMode)));
+  }
+
+  /** Call from the mode init methods of the robot. */
+  public void setRobotMode(Mode mode) {
+    robotMode = mode;
+    requestSwitch();
+  }
+
+  /** The profile devices are being moved to, SysId overriding the robot mode. */
+  public Mode getMode() {
+    return sysIdRunning ? Mode.SYSID : robotMode;
+  }
+
+  /** Runs {@code command} with the {@link Mode#SYSID} profile, returning to the robot mode after. */
+  public Command withSysIdProfile(Command command) {
+    return command
+        .beforeStarting(() -> setSysIdRunning(true))
+        .finallyDo(() -> setSysIdRunning(false));
+  }
+
+  private void setSysIdRunning(boolean running) {
+    sysIdRunning = running;
+    requestSwitch();
+  }
+
+  private void requestSwitch() {
+    if (switchPending.compareAndSet(false, true)) {
+      executor.execute(this::switchProfile);
+    }
+  }
+
+  private void switchProfile() {
+    switchPending.set(false);
+    Mode mode = getMode();
+    if (mode == appliedMode) {
+      return;
+    }
+    long start = System.nanoTime();
+    for (CANSparkMax spark : sparks.values()) {
+      applySafely(spark.getDeviceId(), () -> plan.apply(spark, mode));
+    }
+    for (CANcoder canCoder : canCoders.values()) {
+      applySafely(canCoder.getDeviceID(), () -> plan.apply(canCoder, mode));
+    }
+    appliedMode = mode;
+    DataLogManager.log(String.format("CanProfileManager: %s profile applied in %.0f ms",
+        mode, (System.nanoTime() - start) / 1e6));
+  }
+
+  private static void applySafely(int id, Runnable apply) {
+    try {
+      apply.run();
+    } catch (RuntimeException e) {
+      // one missing device shouldn't leave the rest on the old profile
+      DriverStation.reportError("CanProfileManager: device " + id + " failed: " + e, e.getStackTrace());
+    }
+  }
+}
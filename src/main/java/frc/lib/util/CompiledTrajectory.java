@@ -0,0 +1,115 @@
+package frc.lib.util;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import com.pathplanner.lib.util.GeometryUtil;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A time-parameterized PathPlanner trajectory read straight from a {@link TrajectoryCache} file.
+ * The samples stay in the (memory mapped) buffer and are only decoded for the two samples either
+ * side of the requested time.
+ */
+public class CompiledTrajectory {
+    /* doubles per sample, see TrajectoryCache for the layout */
+    static final int SAMPLE_DOUBLES = 10;
+    static final int SAMPLE_BYTES = SAMPLE_DOUBLES * Double.BYTES;
+
+    static final int TIME = 0;
+    static final int VELOCITY = 1;
+    static final int ACCELERATION = 2;
+    static final int HEADING_ANGULAR_VELOCITY = 3;
+    static final int X = 4;
+    static final int Y = 5;
+    static final int HEADING = 6;
+    static final int HOLONOMIC_ROTATION = 7;
+    static final int HOLONOMIC_ANGULAR_VELOCITY = 8; // NaN if the path has none
+    static final int CURVATURE = 9;
+
+    /* PathPlanner's field length, which it mirrors red positions across */
+    private static final double FIELD_LENGTH_METERS = GeometryUtil.flipFieldPosition(new Translation2d()).getX();
+
+    private final ByteBuffer samples;
+    private final int count;
+
+    /** @param samples buffer positioned at the first sample, holding {@code count} of them */
+    CompiledTrajectory(ByteBuffer samples, int count) {
+        this.samples = samples.slice();
+        this.count = count;
+    }
+
+    public int getSampleCount() {
+        return count;
+    }
+
+    public double getTotalTimeSeconds() {
+        return count == 0 ? 0 : get(count - 1, TIME);
+    }
+
+    private double get(int sample, int field) {
+        return samples.getDouble(sample * SAMPLE_BYTES + field * Double.BYTES);
+    }
+
+    /**
+     * Fills {@code out} with the interpolated state at {@code time}, clamped to the ends of the
+     * trajectory. The State is reused, but its geometry fields are immutable WPILib types, so each
+     * call allocates their new values: a Translation2d, two Rotation2ds and, if the path has a
+     * holonomic angular velocity, an Optional of a boxed Double. Red states are mirrored directly,
+     * without going through GeometryUtil's intermediate objects.
+     *
+     * @param flip mirror the state to the red side of the field
+     */
+    public void sample(double time, boolean flip, PathPlannerTrajectory.State out) {
+        int low = 0;
+        int high = count - 1;
+        if (time <= get(0, TIME)) {
+            high = 0;
+        } else if (time >= get(high, TIME)) {
+            low = high;
+        } else {
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (get(mid, TIME) <= time) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+        double span = get(high, TIME) - get(low, TIME);
+        double t = span <= 0 ? 0 : (time - get(low, TIME)) / span;
+
+        // mirrored the way GeometryUtil does it: x across the field, angles about the y axis
+        double sign = flip ? -1 : 1;
+        double heading = lerpAngle(low, high, HEADING, t);
+        double holonomicRotation = lerpAngle(low, high, HOLONOMIC_ROTATION, t);
+        double holonomicVelocity = lerp(low, high, HOLONOMIC_ANGULAR_VELOCITY, t);
+        double x = lerp(low, high, X, t);
+
+        out.timeSeconds = time;
+        out.velocityMps = lerp(low, high, VELOCITY, t);
+        out.accelerationMpsSq = lerp(low, high, ACCELERATION, t);
+        out.headingAngularVelocityRps = sign * lerp(low, high, HEADING_ANGULAR_VELOCITY, t);
+        out.curvatureRadPerMeter = sign * lerp(low, high, CURVATURE, t);
+        out.positionMeters = new Translation2d(flip ? FIELD_LENGTH_METERS - x : x, lerp(low, high, Y, t));
+        out.heading = Rotation2d.fromRadians(flip ? Math.PI - heading : heading);
+        out.targetHolonomicRotation = Rotation2d.fromRadians(flip ? Math.PI - holonomicRotation : holonomicRotation);
+        out.holonomicAngularVelocityRps = Double.isNaN(holonomicVelocity)
+                ? Optional.empty()
+                : Optional.of(sign * holonomicVelocity);
+    }
+
+    private double lerp(int low, int high, int field, double t) {
+        return MathUtil.interpolate(get(low, field), get(high, field), t);
+    }
+
+    private double lerpAngle(int low, int high, int field, double t) {
+        double start = get(low, field);
+        return start + MathUtil.angleModulus(get(high, field) - start) * t;
+    }
+}
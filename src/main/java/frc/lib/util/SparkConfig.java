@@ -0,0 +1,173 @@
+package frc.lib.util;
+
+import java.util.function.Consumer;
+
+import com.revrobotics.CANSparkBase.IdleMode;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkAbsoluteEncoder.Type;
+import com.revrobotics.SparkPIDController;
+
+/**
+ * Desired configuration for a Spark MAX, applied by {@link SparkConfigurator}. Only the settings
+ * that are set here are touched. Everything the Spark can report back is compared by
+ * {@link #matches} to decide whether the stored configuration needs restoring and burning; the
+ * smart current limit, feedback device and {@link #always} setup can't be read back and are sent
+ * every boot without burning.
+ */
+public class SparkConfig {
+  private static final double TOLERANCE = 1e-5; // the Spark stores floats
+
+  private Boolean inverted;
+  private IdleMode idleMode;
+  private int smartCurrentLimit = 0;
+  private double voltageCompensation = Double.NaN;
+  private double positionConversionFactor = Double.NaN;
+  private double velocityConversionFactor = Double.NaN;
+  private double p = Double.NaN;
+  private double i = Double.NaN;
+  private double d = Double.NaN;
+  private double ff = Double.NaN;
+  private Boolean positionWrapping;
+  private double positionWrappingMin;
+  private double positionWrappingMax;
+  private boolean absoluteEncoderFeedback = false;
+  private Consumer<CANSparkMax> always = spark -> {};
+
+  public SparkConfig inverted(boolean inverted) {
+    this.inverted = inverted;
+    return this;
+  }
+
+  public SparkConfig idleMode(IdleMode idleMode) {
+    this.idleMode = idleMode;
+    return this;
+  }
+
+  public SparkConfig smartCurrentLimit(int amps) {
+    this.smartCurrentLimit = amps;
+    return this;
+  }
+
+  public SparkConfig voltageCompensation(double volts) {
+    this.voltageCompensation = volts;
+    return this;
+  }
+
+  public SparkConfig positionConversionFactor(double factor) {
+    this.positionConversionFactor = factor;
+    return this;
+  }
+
+  public SparkConfig velocityConversionFactor(double factor) {
+    this.velocityConversionFactor = factor;
+    return this;
+  }
+
+  /** Slot 0 gains. */
+  public SparkConfig pid(double p, double i, double d, double ff) {
+    this.p = p;
+    this.i = i;
+    this.d = d;
+    this.ff = ff;
+    return this;
+  }
+
+  public SparkConfig positionWrapping(double min, double max) {
+    this.positionWrapping = true;
+    this.positionWrappingMin = min;
+    this.positionWrappingMax = max;
+    return this;
+  }
+
+  /** Use the duty cycle absolute encoder as the PID feedback device. */
+  public SparkConfig absoluteEncoderFeedback() {
+    this.absoluteEncoderFeedback = true;
+    return this;
+  }
+
+  /** Setup that isn't stored in flash, e.g. status frame periods. Runs every boot, after the rest. */
+  public SparkConfig always(Consumer<CANSparkMax> always) {
+    this.always = always;
+    return this;
+  }
+
+  /** Slot 0 P gain, NaN if {@link #pid} isn't set. */
+  public double getP() {
+    return p;
+  }
+
+  public double getI() {
+    return i;
+  }
+
+  public double getD() {
+    return d;
+  }
+
+  public double getFF() {
+    return ff;
+  }
+
+  public boolean usesAbsoluteEncoderFeedback() {
+    return absoluteEncoderFeedback;
+  }
+
+  /** Sends every setting to the controller's RAM. */
+  void apply(CANSparkMax spark) {
+    RelativeEncoder encoder = spark.getEncoder();
+    SparkPIDController controller = spark.getPIDController();
+    if (inverted != null) spark.setInverted(inverted);
+    if (idleMode != null) spark.setIdleMode(idleMode);
+    if (smartCurrentLimit > 0) spark.setSmartCurrentLimit(smartCurrentLimit);
+    if (!Double.isNaN(voltageCompensation)) spark.enableVoltageCompensation(voltageCompensation);
+    if (!Double.isNaN(positionConversionFactor)) encoder.setPositionConversionFactor(positionConversionFactor);
+    if (!Double.isNaN(velocityConversionFactor)) encoder.setVelocityConversionFactor(velocityConversionFactor);
+    if (!Double.isNaN(p)) {
+      controller.setP(p);
+      controller.setI(i);
+      controller.setD(d);
+      controller.setFF(ff);
+    }
+    if (positionWrapping != null) {
+      controller.setPositionPIDWrappingEnabled(positionWrapping);
+      controller.setPositionPIDWrappingMinInput(positionWrappingMin);
+      controller.setPositionPIDWrappingMaxInput(positionWrappingMax);
+    }
+    applyVolatile(spark);
+  }
+
+  /** Sends the settings that can't be read back, without touching the rest. */
+  void applyVolatile(CANSparkMax spark) {
+    if (smartCurrentLimit > 0) spark.setSmartCurrentLimit(smartCurrentLimit);
+    if (absoluteEncoderFeedback) {
+      spark.getPIDController().setFeedbackDevice(spark.getAbsoluteEncoder(Type.kDutyCycle));
+    }
+    always.accept(spark);
+  }
+
+  /** Whether every setting the controller can report back already has the desired value. */
+  boolean matches(CANSparkMax spark) {
+    RelativeEncoder encoder = spark.getEncoder();
+    SparkPIDController controller = spark.getPIDController();
+    return (inverted == null || spark.getInverted() == inverted)
+        && (idleMode == null || spark.getIdleMode() == idleMode)
+        && (Double.isNaN(voltageCompensation)
+            || equal(spark.getVoltageCompensationNominalVoltage(), voltageCompensation))
+        && (Double.isNaN(positionConversionFactor)
+            || equal(encoder.getPositionConversionFactor(), positionConversionFactor))
+        && (Double.isNaN(velocityConversionFactor)
+            || equal(encoder.getVelocityConversionFactor(), velocityConversionFactor))
+        && (Double.isNaN(p)
+            || equal(controller.getP(), p) && equal(controller.getI(), i)
+            && equal(controller.getD(), d) && equal(controller.getFF(), ff))
+        && (positionWrapping == null
+            || controller.getPositionPIDWrappingEnabled() == positionWrapping
+            && equal(controller.getPositionPIDWrappingMinInput(), positionWrappingMin)
+            && equal(controller.getPositionPIDWrappingMaxInput(), positionWrappingMax));
+  }
+
+  private static boolean equal(double actual, double desired) {
+    return Math.abs(actual - desired) <= TOLERANCE * Math.max(1, Math.abs(desired));
+  }
+}
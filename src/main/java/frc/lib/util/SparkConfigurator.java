@@ -0,0 +1,100 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Configures Spark MAXes in parallel, one background task per device, and only restores and burns
+ * flash when the device's stored configuration differs from the desired {@link SparkConfig}.
+ * Configuration starts as soon as a device is submitted; {@link #awaitAll()} blocks until
+ * everything submitted so far is done and logs how long it took.
+ */
+public class SparkConfigurator {
+  private static final int FLASH_ATTEMPTS = 3;
+  // a Spark ignores frames while it writes flash
+  private static final long FLASH_SETTLE_MS = 300;
+
+  private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "SparkConfigurator");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final List<CompletableFuture<Void>> pending = new ArrayList<>();
+  private static long awaitStart = System.nanoTime();
+
+  /**
+   * Starts configuring {@code spark} in the background.
+   *
+   * @param name used in the setup time report
+   * @return completes once the device is configured
+   */
+  public static synchronized CompletableFuture<Void> submit(String name, CANSparkMax spark, SparkConfig config) {
+    if (pending.isEmpty()) {
+      awaitStart = System.nanoTime();
+    }
+    CompletableFuture<Void> future = CompletableFuture.runAsync(() -> configure(name, spark, config), executor);
+    pending.add(future);
+    return future;
+  }
+
+  private static void configure(String name, CANSparkMax spark, SparkConfig config) {
+    try {
+      configureDevice(name, spark, config);
+    } catch (RuntimeException e) {
+      // one bad device shouldn't stop robotInit
+      DriverStation.reportError("SparkConfigurator: " + name + " failed: " + e, e.getStackTrace());
+    }
+  }
+
+  private static void configureDevice(String name, CANSparkMax spark, SparkConfig config) {
+    long start = System.nanoTime();
+    if (config.matches(spark)) {
+      config.applyVolatile(spark);
+      DataLogManager.log(String.format("SparkConfigurator: %s unchanged, configured in %.0f ms",
+          name, (System.nanoTime() - start) / 1e6));
+      return;
+    }
+    boolean verified = false;
+    for (int attempt = 1; attempt <= FLASH_ATTEMPTS && !verified; attempt++) {
+      spark.restoreFactoryDefaults();
+      config.apply(spark);
+      REVLibError error = spark.burnFlash();
+      sleep(FLASH_SETTLE_MS);
+      verified = error == REVLibError.kOk && config.matches(spark);
+    }
+    DataLogManager.log(String.format("SparkConfigurator: %s flashed%s in %.0f ms",
+        name, verified ? "" : " but NOT VERIFIED", (System.nanoTime() - start) / 1e6));
+  }
+
+  /** Waits for every device submitted so far. */
+  public static void awaitAll() {
+    CompletableFuture<?>[] futures;
+    synchronized (SparkConfigurator.class) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      futures = pending.toArray(CompletableFuture<?>[]::new);
+      pending.clear();
+    }
+    CompletableFuture.allOf(futures).join();
+    DataLogManager.log(String.format("SparkConfigurator: %d devices configured in %.0f ms",
+        futures.length, (System.nanoTime() - awaitStart) / 1e6));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
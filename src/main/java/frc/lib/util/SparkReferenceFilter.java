@@ -0,0 +1,100 @@
+package frc.lib.util;
+
+import com.revrobotics.CANSparkBase.ControlType;
+import com.revrobotics.REVLibError;
+import com.revrobotics.SparkPIDController;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Suppresses redundant Spark Max control frames. A setReference call is only sent when the
+ * setpoint, control type, slot or arbitrary feedforward changed by more than an epsilon, or when
+ * the last frame is older than the keep-alive period. Counts frames sent and suppressed so the CAN
+ * savings can be checked on the dashboard.
+ *
+ * <p>Anything that commands the motor without going through this filter (set(), setVoltage(),
+ * another controller) must call {@link #invalidate()} so the next setpoint is not dropped.
+ */
+public class SparkReferenceFilter {
+  public static final double DEFAULT_EPSILON = 1e-4;
+  public static final double DEFAULT_KEEP_ALIVE_SECONDS = 0.05;
+
+  private final SparkPIDController controller;
+  private final double epsilon;
+  private final double keepAliveSeconds;
+
+  private boolean valid = false;
+  private double lastValue;
+  private ControlType lastControlType;
+  private int lastSlot;
+  private double lastArbFeedforward;
+  private double lastSendTime;
+
+  private long framesSent = 0;
+  private long framesSuppressed = 0;
+
+  public SparkReferenceFilter(SparkPIDController controller) {
+    this(controller, DEFAULT_EPSILON, DEFAULT_KEEP_ALIVE_SECONDS);
+  }
+
+  public SparkReferenceFilter(SparkPIDController controller, double epsilon, double keepAliveSeconds) {
+    this.controller = controller;
+    this.epsilon = epsilon;
+    this.keepAliveSeconds = keepAliveSeconds;
+  }
+
+  public REVLibError setReference(double value, ControlType ctrl) {
+    return setReference(value, ctrl, 0, 0);
+  }
+
+  public REVLibError setReference(double value, ControlType ctrl, int pidSlot, double arbFeedforward) {
+    double now = Timer.getFPGATimestamp();
+    if (valid
+        && ctrl == lastControlType
+        && pidSlot == lastSlot
+        && Math.abs(value - lastValue) <= epsilon
+        && Math.abs(arbFeedforward - lastArbFeedforward) <= epsilon
+        && now - lastSendTime < keepAliveSeconds) {
+      framesSuppressed++;
+      return REVLibError.kOk;
+    }
+
+    REVLibError error = controller.setReference(value, ctrl, pidSlot, arbFeedforward);
+    framesSent++;
+    // on error, leave the filter invalid so the next call retries
+    valid = error == REVLibError.kOk;
+    lastValue = value;
+    lastControlType = ctrl;
+    lastSlot = pidSlot;
+    lastArbFeedforward = arbFeedforward;
+    lastSendTime = now;
+    return error;
+  }
+
+  /** Forces the next setpoint to be sent. */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /* Last setpoint sent, for the physics simulation to play the Spark's part */
+  public double getLastValue() {
+    return lastValue;
+  }
+
+  /** @return null until the first setpoint */
+  public ControlType getLastControlType() {
+    return lastControlType;
+  }
+
+  public double getLastArbFeedforward() {
+    return lastArbFeedforward;
+  }
+
+  public long getFramesSent() {
+    return framesSent;
+  }
+
+  public long getFramesSuppressed() {
+    return framesSuppressed;
+  }
+}
@@ -0,0 +1,162 @@
+package frc.lib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
+import com.pathplanner.lib.util.PIDConstants;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Compiles PathPlanner paths into binary files of precomputed trajectory samples and loads them
+ * back with memory mapped NIO, so following a path doesn't generate a trajectory when it starts.
+ * {@link frc.lib.AutoLoader} loads the paths its autos use in the background; only the ones that
+ * changed since the last boot are generated again.
+ *
+ * <p>File layout, big endian:
+ * <pre>
+ *   int    MAGIC
+ *   int    VERSION
+ *   byte[32] SHA-256 of the .path JSON and the follower config
+ *   int    sample count
+ *   samples, {@link CompiledTrajectory#SAMPLE_DOUBLES} doubles each
+ * </pre>
+ * A file whose magic, version or hash doesn't match is stale and is rebuilt on load. Bump
+ * {@link #VERSION} whenever the layout or the way trajectories are generated changes.
+ */
+public class TrajectoryCache {
+    private static final int MAGIC = 0x50505443; // "PPTC"
+    private static final int VERSION = 1;
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + HASH_BYTES + Integer.BYTES;
+
+    private final File pathDirectory;
+    private final File cacheDirectory;
+    private final byte[] configBytes;
+
+    /**
+     * @param cacheDirectory where compiled files go, must be writable
+     * @param config         follower config, part of every file's hash
+     */
+    public TrajectoryCache(File cacheDirectory, HolonomicPathFollowerConfig config) {
+        this.pathDirectory = new File(Filesystem.getDeployDirectory(), "pathplanner/paths");
+        this.cacheDirectory = cacheDirectory;
+        this.configBytes = describe(config).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The compiled trajectory for a path, compiling it first if the cache is missing or stale. Slow
+     * when it compiles, so call it off the robot thread.
+     *
+     * @param path the already parsed {@code pathName}, only used if it has to be compiled
+     */
+    public CompiledTrajectory load(String pathName, PathPlannerPath path) throws IOException {
+        if (!isFresh(pathName)) {
+            compile(pathName, path);
+            DataLogManager.log("TrajectoryCache: compiled " + pathName);
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile(pathName), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt(HEADER_BYTES - Integer.BYTES);
+            buffer.position(HEADER_BYTES);
+            return new CompiledTrajectory(buffer, count);
+        }
+    }
+
+    private boolean isFresh(String pathName) throws IOException {
+        Path file = cacheFile(pathName);
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        header.get(hash);
+        int count = header.getInt();
+        return Arrays.equals(hash, hash(pathName))
+                && Files.size(file) == HEADER_BYTES + (long) count * CompiledTrajectory.SAMPLE_BYTES;
+    }
+
+    private void compile(String pathName, PathPlannerPath path) throws IOException {
+        PathPlannerTrajectory trajectory = path.getTrajectory(new ChassisSpeeds(),
+                path.getPreviewStartingHolonomicPose().getRotation());
+        List<PathPlannerTrajectory.State> states = trajectory.getStates();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + states.size() * CompiledTrajectory.SAMPLE_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).put(hash(pathName)).putInt(states.size());
+        for (PathPlannerTrajectory.State state : states) {
+            buffer.putDouble(state.timeSeconds)
+                    .putDouble(state.velocityMps)
+                    .putDouble(state.accelerationMpsSq)
+                    .putDouble(state.headingAngularVelocityRps)
+                    .putDouble(state.positionMeters.getX())
+                    .putDouble(state.positionMeters.getY())
+                    .putDouble(state.heading.getRadians())
+                    .putDouble(state.targetHolonomicRotation.getRadians())
+                    .putDouble(state.holonomicAngularVelocityRps.orElse(Double.NaN))
+                    .putDouble(state.curvatureRadPerMeter);
+        }
+        buffer.flip();
+
+        // write next to the target and rename, so a crash never leaves a half written cache
+        Files.createDirectories(cacheDirectory.toPath());
+        Path temp = Files.createTempFile(cacheDirectory.toPath(), pathName, ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, cacheFile(pathName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] hash(String pathName) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(new File(pathDirectory, pathName + ".path").toPath()));
+            digest.update(configBytes);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path cacheFile(String pathName) {
+        return new File(cacheDirectory, pathName + ".traj").toPath();
+    }
+
+    private static String describe(HolonomicPathFollowerConfig config) {
+        return describe(config.translationConstants) + describe(config.rotationConstants)
+                + config.maxModuleSpeed + "," + config.driveBaseRadius + "," + config.period + ","
+                + config.replanningConfig.enableInitialReplanning + ","
+                + config.replanningConfig.enableDynamicReplanning + ","
+                + config.replanningConfig.dynamicReplanningTotalErrorThreshold + ","
+                + config.replanningConfig.dynamicReplanningErrorSpikeThreshold + ";";
+    }
+
+    private static String describe(PIDConstants constants) {
+        return constants.kP + "," + constants.kI + "," + constants.kD + "," + constants.iZone + ";";
+    }
+}
@@ -0,0 +1,99 @@
+package frc.robot;
+
+import frc.lib.util.CanBusPlanner;
+import frc.lib.util.CanBusPlanner.CanCoderSignal;
+import frc.lib.util.CanBusPlanner.Mode;
+import frc.lib.util.CanBusPlanner.SparkSignal;
+import frc.lib.util.CanProfileManager;
+import frc.robot.Constants.CANConstants;
+import frc.robot.Constants.ClimbConstants;
+import frc.robot.Constants.FastLoopConstants;
+import frc.robot.Constants.IntakeConstants;
+import frc.robot.Constants.ShooterConstants;
+
+/**
+ * Every device on the CAN bus and the signals the code reads from it. A new device, or a new signal
+ * read from an existing one, goes here first; {@code ./gradlew canBudget} (part of
+ * {@code ./gradlew build}) prints the projected load and fails if it's over
+ * {@link CANConstants#UTILIZATION_BUDGET} in any mode. Devices register with {@link #PROFILES},
+ * which moves them between the mode profiles as the robot changes mode.
+ */
+public final class CanPlan {
+  public static final CanBusPlanner PLAN = new CanBusPlanner(CANConstants.UTILIZATION_BUDGET);
+  public static final CanProfileManager PROFILES = new CanProfileManager(PLAN);
+  // swerve setpoints are re-sent by the fast loop, see Swerve
+  private static final double SWERVE_CONTROL_HZ = 1 / FastLoopConstants.PERIOD_SECONDS;
+
+  static {
+    /* Swerve: both motors sampled by the odometry thread, velocity and CANcoders read by the loop */
+    module("Mod 0", Constants.Swerve.Mod0.DRIVE_MOTOR_ID, Constants.Swerve.Mod0.ANGLE_MOTOR_ID,
+        Constants.Swerve.Mod0.CAN_CODER_ID);
+    module("Mod 1", Constants.Swerve.Mod1.DRIVE_MOTOR_ID, Constants.Swerve.Mod1.ANGLE_MOTOR_ID,
+        Constants.Swerve.Mod1.CAN_CODER_ID);
+    module("Mod 2", Constants.Swerve.Mod2.DRIVE_MOTOR_ID, Constants.Swerve.Mod2.ANGLE_MOTOR_ID,
+        Constants.Swerve.Mod2.CAN_CODER_ID);
+    module("Mod 3", Constants.Swerve.Mod3.DRIVE_MOTOR_ID, Constants.Swerve.Mod3.ANGLE_MOTOR_ID,
+        Constants.Swerve.Mod3.CAN_CODER_ID);
+
+    /* Intake: open loop roller, deploy closed loop on the through bore */
+    PLAN.spark("Intake roller", IntakeConstants.INTAKE_MOTOR_ID)
+        .control(CANConstants.CONTROL_HZ);
+    PLAN.spark("Intake deploy", IntakeConstants.DEPLOY_MOTOR_ID)
+        .needs(SparkSignal.ABSOLUTE_POSITION, CANConstants.LOOP_SIGNAL_HZ)
+        .needs(SparkSignal.POSITION, CANConstants.LOOP_SIGNAL_HZ)
+        .control(CANConstants.CONTROL_HZ);
+
+    /* Shooter: velocity closed loop, characterized with SysId */
+    PLAN.spark("Shooter left kicker", ShooterConstants.LEFT_KICKER_MOTOR_ID)
+        .needs(SparkSignal.VELOCITY, CANConstants.LOOP_SIGNAL_HZ)
+        .needs(SparkSignal.FAULTS_AND_OUTPUT, CANConstants.SYSID_HZ, Mode.SYSID)
+        .needs(SparkSignal.VELOCITY, CANConstants.SYSID_HZ, Mode.SYSID)
+        .control(CANConstants.CONTROL_HZ);
+    PLAN.spark("Shooter right kicker", ShooterConstants.RIGHT_KICKER_MOTOR_ID)
+        .needs(SparkSignal.VELOCITY, CANConstants.LOOP_SIGNAL_HZ)
+        .needs(SparkSignal.FAULTS_AND_OUTPUT, CANConstants.SYSID_HZ, Mode.SYSID)
+        .needs(SparkSignal.VELOCITY, CANConstants.SYSID_HZ, Mode.SYSID)
+        .control(CANConstants.CONTROL_HZ);
+
+    /* Climb: open loop, only the left side has its encoder read */
+    PLAN.spark("Climb left", ClimbConstants.LEFT_CLIMB_MOTOR_ID)
+        .needs(SparkSignal.POSITION, CANConstants.LOOP_SIGNAL_HZ)
+        .control(CANConstants.CONTROL_HZ);
+    PLAN.spark("Climb right", ClimbConstants.RIGHT_CLIMB_MOTOR_ID)
+        .control(CANConstants.CONTROL_HZ);
+
+    /* Not configured by us, but they share the bus */
+    PLAN.other("roboRIO heartbeat", 0, 50);
+
+    /* Mode profiles */
+    PLAN.limit(Mode.DISABLED, CANConstants.DISABLED_MAX_HZ);
+    PLAN.allSparksNeed(SparkSignal.FAULTS_AND_OUTPUT, CANConstants.TEST_FAULTS_HZ, Mode.TEST);
+  }
+
+  private CanPlan() {}
+
+  private static void module(String name, int driveId, int angleId, int canCoderId) {
+    CanBusPlanner.Spark drive = PLAN.spark(name + " drive", driveId)
+        .needs(SparkSignal.VELOCITY, CANConstants.LOOP_SIGNAL_HZ)
+        .needs(SparkSignal.FAULTS_AND_OUTPUT, CANConstants.SYSID_HZ, Mode.SYSID)
+        .needs(SparkSignal.VELOCITY, CANConstants.SYSID_HZ, Mode.SYSID)
+        .control(SWERVE_CONTROL_HZ);
+    CanBusPlanner.Spark angle = PLAN.spark(name + " angle", angleId)
+        .control(SWERVE_CONTROL_HZ);
+    // odometry samples both positions at its own rate, except during SysId where the pose doesn't matter
+    for (Mode mode : Mode.values()) {
+      double positionHz = mode == Mode.SYSID ? CANConstants.SYSID_HZ : Constants.Swerve.ODOMETRY_FREQUENCY;
+      drive.needs(SparkSignal.POSITION, positionHz, mode);
+      angle.needs(SparkSignal.POSITION, positionHz, mode);
+    }
+    PLAN.canCoder(name + " CANcoder", canCoderId)
+        .needs(CanCoderSignal.ABSOLUTE_POSITION, CANConstants.LOOP_SIGNAL_HZ)
+        .needs(CanCoderSignal.VELOCITY, CANConstants.LOOP_SIGNAL_HZ);
+  }
+
+  /** Prints the plan, exits with 1 if it's over budget. Run by ./gradlew canBudget. */
+  public static void main(String[] args) {
+    System.out.print(PLAN.report());
+    System.exit(PLAN.isWithinBudget() ? 0 : 1);
+  }
+}
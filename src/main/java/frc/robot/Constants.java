@@ -1,5 +1,7 @@
 package frc.robot;
 
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
 import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.ReplanningConfig;
@@ -20,6 +22,7 @@ import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.units.Units;
 import frc.lib.config.SwerveModuleConstants;
+import frc.lib.config.VisionCameraConstants;
 
 public final class Constants {
 
@@ -65,6 +68,19 @@ public final class Constants {
 
   }
 
+  public static final class CANConstants {
+    /* Highest projected bus utilization CanPlan may reach, checked by ./gradlew canBudget */
+    public static final double UTILIZATION_BUDGET = 0.7;
+    /* How often setpoints are sent, the main loop rate */
+    public static final double CONTROL_HZ = 50;
+    /* How fresh signals only read by the main loop need to be */
+    public static final double LOOP_SIGNAL_HZ = 50;
+    /* Mode profiles: everything capped while disabled, faults watched in test, SysId logged fast */
+    public static final double DISABLED_MAX_HZ = 20;
+    public static final double TEST_FAULTS_HZ = 10;
+    public static final double SYSID_HZ = 100;
+  }
+
   public static final class VisionConstants {
     public static final String FRONT_CAMERA_NAME = "front";
     public static final String BACK_CAMERA_NAME = "back";
@@ -73,6 +89,12 @@ public final class Constants {
         new Rotation3d(0, Units.Degrees.of(-50).in(Units.Radians), 3.14 /*180 deg*/));
     public static final Transform3d ROBOT_TO_FRONT_CAM = new Transform3d(new Translation3d(-0.1524,0, 0.635),
         new Rotation3d(0, Units.Degrees.of(-32).in(Units.Radians), 0));
+    // Every camera Vision runs. Add a camera here, nothing else needs to change.
+    public static final VisionCameraConstants[] CAMERAS = {
+        // "Front" and "Back" are the keys the dashboard layouts already use
+        new VisionCameraConstants(FRONT_CAMERA_NAME, "Front", ROBOT_TO_FRONT_CAM, PoseStrategy.CLOSEST_TO_REFERENCE_POSE, 1),
+        new VisionCameraConstants(BACK_CAMERA_NAME, "Back", ROBOT_TO_BACK_CAM, PoseStrategy.CLOSEST_TO_REFERENCE_POSE, 1)
+    };
     public static final String FIELD_LAYOUT_RESOURCE_FILE = AprilTagFields.k2024Crescendo.m_resourceFile;
      /** Minimum target ambiguity. Targets with higher ambiguity will be discarded */
     public static final double APRILTAG_AMBIGUITY_THRESHOLD = 0.2;
@@ -82,6 +104,43 @@ public final class Constants {
     public static final double DISTANCE_WEIGHT = 7;
     public static final int TAG_PRESENCE_WEIGHT = 10;
 
+    /* Camera workers */
+    // Threads shared by all cameras to fetch results and estimate poses
+    public static final int WORKER_THREADS = 2;
+    // How often each camera is checked for a new pipeline result
+    public static final long CAMERA_POLL_PERIOD_MS = 5;
+    // A connected camera with no frame for this long is reported unhealthy
+    public static final double CAMERA_STALE_SECONDS = 0.5;
+    // Measurements waiting for the main loop, per camera. Extra ones are dropped.
+    public static final int MEASUREMENT_QUEUE_CAPACITY = 8;
+    // Estimate a pose for every frame published since the last poll, not just the newest one
+    public static final boolean INGEST_ALL_FRAMES = true;
+    // Frames NetworkTables keeps per camera between polls when ingesting all frames
+    public static final int FRAME_QUEUE_DEPTH = 20;
+
+    /* Fusion, see VisionFusion */
+    // Measurements closer together than this are treated as the same frame seen by several cameras
+    public static final double FUSION_WINDOW_SECONDS = 0.015;
+    // Squared Mahalanobis distance above which a measurement is rejected (chi-squared, 3 DOF, 99%)
+    public static final double FUSION_GATE_CHI_SQUARED = 11.34;
+    // Rejected measurements in a row that agree with each other re-seed the estimator
+    public static final int RESEED_AGREEING_MEASUREMENTS = 8;
+    // Single-tag solutions whose heading is further than this from the gyro are not used
+    public static final double AMBIGUITY_HEADING_TOLERANCE_DEGREES = 15;
+
+    /* Simulation, see VisionSim */
+    public static final double SIM_FPS = 30;
+    public static final double SIM_AVG_LATENCY_MS = 35;
+    public static final double SIM_LATENCY_STD_DEV_MS = 5;
+    // Pixel noise on the detected tag corners
+    public static final double SIM_CALIB_ERROR_PX = 0.25;
+    public static final double SIM_CALIB_ERROR_STD_DEV_PX = 0.08;
+    public static final int SIM_RESOLUTION_WIDTH = 960;
+    public static final int SIM_RESOLUTION_HEIGHT = 720;
+    public static final double SIM_DIAGONAL_FOV_DEGREES = 90;
+    // Ground truth poses kept for scoring, one per loop
+    public static final int SIM_TRUTH_HISTORY_SIZE = 100;
+
     /**
      * Standard deviations of model states. Increase these numbers to trust your
      * model's state estimates less. This
@@ -121,15 +180,27 @@ public final class Constants {
 
     public static final double OPEN_LOOP_RAMP = 2;
 
+    /* Odometry */
+    // navX update rate, in Hz. 200 is its maximum; left at the default 60, most yaw samples repeat
+    public static final byte NAVX_UPDATE_RATE_HZ = (byte) 200;
+    // Rate the odometry thread samples module positions and the gyro at, in Hz. Any faster than
+    // the navX updates and the extra samples get a stale yaw
+    public static final double ODOMETRY_FREQUENCY = 200.0;
+    // How far back Swerve keeps a pose history for latency compensated lookups, in seconds
+    public static final double POSE_HISTORY_SECONDS = 1.5;
+
     public static final double DRIVE_GEAR_RATIO = (5.14 / 1.0); // 6.75:1 for L2
 
     public static final double ANGLE_GEAR_RATIO = (12.8 / 1.0); // 12.8:1 for all L's
 
-    public static final SwerveDriveKinematics SWERVE_KINEMATICS = new SwerveDriveKinematics(
+    public static final Translation2d[] MODULE_TRANSLATIONS = {
         new Translation2d(WHEEL_BASE / 2.0, TRACK_WIDTH / 2.0),
         new Translation2d(WHEEL_BASE / 2.0, -TRACK_WIDTH / 2.0),
         new Translation2d(-WHEEL_BASE / 2.0, TRACK_WIDTH / 2.0),
-        new Translation2d(-WHEEL_BASE / 2.0, -TRACK_WIDTH / 2.0));
+        new Translation2d(-WHEEL_BASE / 2.0, -TRACK_WIDTH / 2.0)
+    };
+
+    public static final SwerveDriveKinematics SWERVE_KINEMATICS = new SwerveDriveKinematics(MODULE_TRANSLATIONS);
 
     /* Swerve Compensation */
     public static final double VOLTAGE_COMP = 12.0;
@@ -171,6 +242,12 @@ public final class Constants {
     // public static final boolean DRIVE_INVERT = true;
     public static final boolean ANGLE_INVERT = false;
 
+    /* Simulation, see SwerveDriveSim */
+    // Physics step, the sim runs as many as fit in each loop. Smaller is more accurate and slower.
+    public static final double SIM_SUBSTEP_SECONDS = 0.001;
+    // Steering moment of inertia at the wheel, in kg m^2
+    public static final double SIM_STEER_MOI = 0.004;
+
     /* Module Specific Constants */
     /* Front Left Module - Module 0 */
     public static final class Mod0 {
@@ -252,6 +329,27 @@ public final class Constants {
     6.5, // Max module speed, in m/s
     Swerve.WHEEL_BASE, // Drive base radius in meters. Distance from robot center to furthest module.
     new ReplanningConfig(true, true)); // Default path replanning config. See the API for the options here
+
+    public static final String DEFAULT_AUTO = "Center 2 note auto";
+    // Background threads parsing autos and paths, one per roboRIO core
+    public static final int AUTO_LOADER_THREADS = 2;
+    // Compiled paths, under /home/lvuser on the robot and build/ in simulation. Safe to delete,
+    // the autos' paths are recompiled on boot.
+    public static final String TRAJECTORY_CACHE_DIRECTORY = "trajectory-cache";
+  }
+
+  public static final class FastLoopConstants {
+    // 100 Hz; a 5 ms loop would put swerve setpoints over the CAN budget, see CanPlan
+    public static final double PERIOD_SECONDS = 0.01;
+    // Halfway between robotPeriodic() calls
+    public static final double OFFSET_SECONDS = 0.005;
+  }
+
+  public static final class ProfilerConstants {
+    // Turn on from SmartDashboard/Profiler/Enabled when chasing loop overruns
+    public static final boolean ENABLED_BY_DEFAULT = false;
+    // Seconds between histogram publishes to NT and the DataLog
+    public static final double PUBLISH_PERIOD = 1.0;
   }
 
   /* LED Ports */
@@ -10,7 +10,15 @@ import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.FastLoop;
+import frc.lib.LoopProfiler;
+import frc.lib.LoopTimer;
+import frc.lib.SensorFrame;
+import frc.lib.Telemetry;
 import frc.lib.config.CTREConfigs;
+import frc.lib.util.CanBusPlanner.Mode;
+import frc.robot.Constants.FastLoopConstants;
+import frc.robot.Constants.ProfilerConstants;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -25,6 +33,8 @@ public class Robot extends TimedRobot {
   public static CTREConfigs ctreConfigs;
   private Command m_autonomousCommand;
   private RobotContainer m_robotContainer;
+  private LoopProfiler.Entry sensorFrameProfile;
+  private LoopTimer robotPeriodicTimer;
 
   /**
    * This function is run when the robot is first started up and should be used
@@ -36,6 +46,10 @@ public class Robot extends TimedRobot {
     ctreConfigs = new CTREConfigs();
     m_robotContainer = new RobotContainer();
     DataLogManager.start();
+    LoopProfiler.start(ProfilerConstants.ENABLED_BY_DEFAULT, ProfilerConstants.PUBLISH_PERIOD);
+    sensorFrameProfile = LoopProfiler.entry("SensorFrame");
+    robotPeriodicTimer = new LoopTimer("RobotPeriodic", kDefaultPeriod);
+    FastLoop.start(this, FastLoopConstants.PERIOD_SECONDS, FastLoopConstants.OFFSET_SECONDS);
     if (Robot.isReal()) {
       URCL.start();
     }
@@ -61,17 +75,27 @@ public class Robot extends TimedRobot {
     // and running subsystem periodic() methods. This must be called from the
     // robot's periodic
     // block in order for anything in the Command-based framework to work.
+    // Sensors are read once up front so every subsystem sees the same snapshot.
+    long loopStart = robotPeriodicTimer.start();
+    long sensorStart = sensorFrameProfile.start();
+    SensorFrame.update();
+    sensorFrameProfile.stop(sensorStart);
     CommandScheduler.getInstance().run();
+    robotPeriodicTimer.stop(loopStart);
+    Telemetry.update();
+    LoopProfiler.update();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
   @Override
   public void disabledInit() {
+    CanPlan.PROFILES.setRobotMode(Mode.DISABLED);
     m_robotContainer.disabledInit();
   }
 
   @Override
   public void disabledPeriodic() {
+    m_robotContainer.disabledPeriodic();
   }
 
   /**
@@ -80,6 +104,7 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void autonomousInit() {
+    CanPlan.PROFILES.setRobotMode(Mode.AUTONOMOUS);
     m_autonomousCommand = m_robotContainer.getAutonomousCommand();
 
     // schedule the autonomous command (example)
@@ -95,6 +120,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void teleopInit() {
+    CanPlan.PROFILES.setRobotMode(Mode.TELEOP);
     // This makes sure that the autonomous stops running when
     // teleop starts running. If you want the autonomous to
     // continue until interrupted by another command, remove
@@ -111,6 +137,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void testInit() {
+    CanPlan.PROFILES.setRobotMode(Mode.TEST);
     // Cancels all running commands at the start of test mode.
     CommandScheduler.getInstance().cancelAll();
   }
@@ -119,4 +146,8 @@ public class Robot extends TimedRobot {
   @Override
   public void testPeriodic() {
   }
+
+  public RobotContainer getRobotContainer() {
+    return m_robotContainer;
+  }
 }
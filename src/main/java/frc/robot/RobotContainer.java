@@ -4,21 +4,29 @@
 
 package frc.robot;
 
+import java.io.File;
+
 import com.kauailabs.navx.frc.AHRS;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.auto.NamedCommands;
 
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.SPI.Port;
-import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import edu.wpi.first.wpilibj2.command.button.POVButton;
+import frc.lib.AutoLoader;
+import frc.lib.util.SparkConfigurator;
+import frc.lib.util.TrajectoryCache;
+import frc.robot.Constants.AutoConstants;
 import frc.robot.commands.*;
 // import frc.robot.autos.*;
 import frc.robot.subsystems.*;
@@ -38,13 +46,13 @@ public class RobotContainer {
         /* Subsystems & Hardware */
                 
                 /* Gyro Sensor */
-                AHRS ahrs = new AHRS(Port.kMXP); /* Alternatives:  SPI.Port.kMXP, I2C.Port.kMXP or SerialPort.Port.kUSB */
+                AHRS ahrs = new AHRS(Port.kMXP, Constants.Swerve.NAVX_UPDATE_RATE_HZ); /* Alternatives:  SPI.Port.kMXP, I2C.Port.kMXP or SerialPort.Port.kUSB */
                 /* Swerve Subsystem */
                 private final Swerve s_Swerve = new Swerve(ahrs);
                 // private final Intake s_GroundIntake = new Intake();
                 // private final Shooter s_Shooter = new Shooter(); 
                 // private final Climb s_Climb = new Climb();
-                // private final Vision s_Vision = new Vision(s_Swerve::useVisionMeasurement,s_Swerve::getPose);
+                // private final Vision s_Vision = new Vision(s_Swerve::useVisionMeasurement,s_Swerve::getPose,s_Swerve.getPoseHistory(),s_Swerve.getGyroHistory());
                 
                 
                 // private final LedSub ledSub = new LedSub();
@@ -119,8 +127,15 @@ public class RobotContainer {
                 
                 
         /* Other */
-                /* SendableChooser */
-                public final SendableChooser<Command> autoChooser;
+                /* Autos, parsed in the background and composed while disabled */
+                public final AutoLoader autoLoader;
+                /* Compiled paths for FollowCompiledPath, in /home/lvuser on the robot and build/ in simulation */
+                public final TrajectoryCache trajectoryCache = new TrajectoryCache(
+                        new File(RobotBase.isReal()
+                                ? Filesystem.getOperatingDirectory()
+                                : new File(Filesystem.getOperatingDirectory(), "build"),
+                                AutoConstants.TRAJECTORY_CACHE_DIRECTORY),
+                        AutoConstants.PATH_FOLLOWER_CONFIG);
         /**
          * The container for the robot. Contains subsystems, OI devices, and commands.
          */
@@ -153,13 +168,26 @@ public class RobotContainer {
                                         () -> robotCentric.getAsBoolean()));
 
                 /* Others */
-                        // Auto chooser
-                        autoChooser = AutoBuilder.buildAutoChooser("Center 2 note auto");
+                        // Auto chooser, only indexes the autos here. Paths follow their compiled
+                        // trajectory, except the ones FollowCompiledPath can't do: Choreo paths,
+                        // paths that failed to compile and paths with event markers.
+                        autoLoader = new AutoLoader(AutoConstants.DEFAULT_AUTO, AutoConstants.AUTO_LOADER_THREADS,
+                                s_Swerve::resetOdometry, Swerve::shouldFlipPath, trajectoryCache,
+                                (path, compiled) -> compiled != null && path.getEventMarkers().isEmpty()
+                                        ? new FollowCompiledPath(s_Swerve, path, compiled)
+                                        : AutoBuilder.followPath(path));
                         // Configure the button bindings
                         configureButtonBindings();
 
                         // Configure Smart Dashboard options
                         configureSmartDashboard();
+
+                        // Wait for motor controllers still configuring in the background
+                        SparkConfigurator.awaitAll();
+                        DataLogManager.log(CanPlan.PLAN.report());
+                        if (!CanPlan.PLAN.isWithinBudget()) {
+                                DriverStation.reportError("CAN bus plan is over budget, see ./gradlew canBudget", false);
+                        }
         }
 
         /**
@@ -203,7 +231,7 @@ public class RobotContainer {
 
         private void configureSmartDashboard() {
                 SmartDashboard.putNumber("Swerve/Speed Multiplier", SPEED_MULTIPLIER);
-                SmartDashboard.putData("Auto Chooser", autoChooser);
+                SmartDashboard.putData("Auto Chooser", autoLoader.getChooser());
 
         
         }
@@ -214,13 +242,23 @@ public class RobotContainer {
                 codriver.setRumble(RumbleType.kBothRumble, 0);
         }
 
+        public void disabledPeriodic() {
+                // one auto per loop, so composing them doesn't overrun the loop
+                autoLoader.composeNext();
+        }
+
         /**
          * Use this to pass the autonomous command to the main {@link Robot} class.
          *
          * @return the command to run in autonomous
          */
         public Command getAutonomousCommand() {
-                // Executes the autonomous command chosen in smart dashboard
-                return autoChooser.getSelected();
+                // Executes the autonomous command chosen in smart dashboard, building it now if it isn't ready
+                return autoLoader.getSelected();
+        }
+
+        /** For the simulation harnesses in frc.robot.sim. */
+        public Swerve getSwerve() {
+                return s_Swerve;
         }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package frc.robot.commands;
+
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import com.pathplanner.lib.util.PathPlannerLogging;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.lib.util.CompiledTrajectory;
+import frc.lib.util.TrajectoryCache;
+import frc.robot.Constants.AutoConstants;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Follows a path's trajectory from the {@link TrajectoryCache} with PathPlanner's holonomic
+ * controller. Unlike AutoBuilder.followPath() nothing is generated when the command starts; the
+ * trajectory was compiled ahead of time and is sampled from the mapped file. The active path and
+ * target pose are logged through {@link PathPlannerLogging} the same way.
+ *
+ * <p>The trajectory starts from rest and isn't replanned, and event markers aren't run, so paths
+ * with event markers should still go through AutoBuilder.
+ */
+public class FollowCompiledPath extends Command {
+  private final Swerve s_Swerve;
+  private final PathPlannerPath path;
+  private final CompiledTrajectory trajectory;
+  private final PPHolonomicDriveController controller = new PPHolonomicDriveController(
+      AutoConstants.PATH_FOLLOWER_CONFIG.translationConstants,
+      AutoConstants.PATH_FOLLOWER_CONFIG.rotationConstants,
+      AutoConstants.PATH_FOLLOWER_CONFIG.period,
+      AutoConstants.PATH_FOLLOWER_CONFIG.maxModuleSpeed,
+      AutoConstants.PATH_FOLLOWER_CONFIG.driveBaseRadius);
+  private final PathPlannerTrajectory.State target = new PathPlannerTrajectory.State();
+  private final Timer timer = new Timer();
+  private boolean flip;
+
+  /**
+   * @param path       the path, for logging
+   * @param trajectory its compiled trajectory
+   */
+  public FollowCompiledPath(Swerve s_Swerve, PathPlannerPath path, CompiledTrajectory trajectory) {
+    this.s_Swerve = s_Swerve;
+    this.path = path;
+    this.trajectory = trajectory;
+    addRequirements(s_Swerve);
+  }
+
+  @Override
+  public void initialize() {
+    flip = Swerve.shouldFlipPath();
+    controller.reset(s_Swerve.getPose(), s_Swerve.getChassisSpeeds());
+    PathPlannerLogging.logActivePath(flip ? path.flipPath() : path);
+    timer.restart();
+  }
+
+  @Override
+  public void execute() {
+    trajectory.sample(timer.get(), flip, target);
+    PathPlannerLogging.logTargetPose(target.getTargetHolonomicPose());
+    s_Swerve.driveRelative(controller.calculateRobotRelativeSpeeds(s_Swerve.getPose(), target));
+  }
+
+  @Override
+  public boolean isFinished() {
+    return timer.hasElapsed(trajectory.getTotalTimeSeconds());
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    timer.stop();
+    s_Swerve.stop();
+    PathPlannerLogging.logActivePath(null);
+  }
+}
@@ -2,7 +2,6 @@ package frc.robot.commands;
 
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.filter.SlewRateLimiter;
-import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
 import frc.robot.subsystems.Swerve;
@@ -47,7 +46,8 @@ public class TeleopSwerve extends Command {
 
     /* Drive */
     s_Swerve.drive(
-        new Translation2d(translationVal, strafeVal).times(Constants.Swerve.MAX_SPEED),
+        translationVal * Constants.Swerve.MAX_SPEED,
+        strafeVal * Constants.Swerve.MAX_SPEED,
         rotationVal * Constants.Swerve.MAX_ANGULAR_VELOCITY,
         !robotCentricSup.getAsBoolean(), true);
   }
@@ -0,0 +1,248 @@
+package frc.robot.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import com.pathplanner.lib.util.PathPlannerLogging;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.lib.AutoLoader;
+import frc.lib.FastLoop;
+import frc.lib.util.CanBusPlanner.Mode;
+import frc.robot.CanPlan;
+import frc.robot.Constants.FastLoopConstants;
+import frc.robot.Robot;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Runs autonomous routines against the {@link SwerveDriveSim} as fast as the CPU allows. Boots the
+ * robot once under HAL simulation with the clock paused and waits for its {@link AutoLoader} to
+ * load every auto and compile their paths, so none of that runs during the measured loops. Then for
+ * each {@code .auto} it takes the robot's own composed command, puts the simulated robot on its
+ * starting pose and steps the robot loop until the auto finishes or the 15 s period runs out.
+ *
+ * <p>For each auto it reports how long it took in match time, how far the simulated robot was from
+ * the path's target pose (from {@link PathPlannerLogging}) while following paths, how far odometry
+ * had drifted from the simulated robot at the end, and the wall clock time of each robot loop.
+ * Exits with 1 if an auto failed to load or didn't finish in time.
+ *
+ * <p>Run with {@code ./gradlew simAutos}, optionally {@code -Pautos="name,name"}; the summary is
+ * written to build/reports/autos. Autos run on the blue alliance.
+ */
+public final class AutoRunner {
+    private static final double AUTO_SECONDS = 15.0;
+    // Disabled between autos, so the drivetrain comes to rest
+    private static final double SETTLE_SECONDS = 1.0;
+    private static final int MAX_LOOPS = (int) Math.ceil(AUTO_SECONDS / TimedRobot.kDefaultPeriod);
+
+    /* Target pose of the path being followed, null between paths */
+    private static Pose2d target;
+
+    private AutoRunner() {
+    }
+
+    /** @param args the summary file, then the autos to run; all of them if none are given */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path summaryFile = args.length > 0 ? Paths.get(args[0]) : null;
+        List<String> names = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : allAutos();
+
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("HAL failed to initialize");
+        }
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.setAutonomous(true);
+        DriverStationSim.setTest(false);
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+
+        Robot robot = new Robot();
+        robot.robotInit();
+        AutoLoader autoLoader = robot.getRobotContainer().autoLoader;
+        autoLoader.awaitLoaded();
+        Swerve swerve = robot.getRobotContainer().getSwerve();
+        SwerveDriveSim sim = swerve.getSimulation();
+        PathPlannerLogging.setLogTargetPoseCallback(pose -> target = pose);
+        PathPlannerLogging.setLogActivePathCallback(poses -> {
+            if (poses.isEmpty()) {
+                target = null;
+            }
+        });
+
+        List<Result> results = new ArrayList<>();
+        for (String name : names) {
+            Result result = run(robot, autoLoader, swerve, sim, name);
+            System.out.println(result.format());
+            results.add(result);
+        }
+
+        String summary = summary(results);
+        System.out.print(summary);
+        if (summaryFile != null) {
+            if (summaryFile.getParent() != null) {
+                Files.createDirectories(summaryFile.getParent());
+            }
+            Files.writeString(summaryFile, summary);
+        }
+        System.exit(results.stream().allMatch(Result::passed) ? 0 : 1);
+    }
+
+    private static List<String> allAutos() {
+        File[] files = new File(Filesystem.getDeployDirectory(), "pathplanner/autos")
+                .listFiles((dir, file) -> file.endsWith(".auto"));
+        return files == null ? List.of() : Arrays.stream(files)
+                .map(file -> file.getName().substring(0, file.getName().length() - ".auto".length()))
+                .sorted()
+                .toList();
+    }
+
+    private static Result run(Robot robot, AutoLoader autoLoader, Swerve swerve, SwerveDriveSim sim, String name) {
+        Result result = new Result(name);
+        setEnabled(false);
+        robot.disabledInit();
+        for (int i = 0; i < SETTLE_SECONDS / TimedRobot.kDefaultPeriod; i++) {
+            step(robot);
+        }
+
+        Optional<Command> auto = autoLoader.getAuto(name);
+        if (auto.isEmpty()) {
+            result.error = "failed to load";
+            return result;
+        }
+        Command command = auto.get();
+        Pose2d start;
+        try {
+            start = PathPlannerAuto.getStaringPoseFromAutoFile(name);
+        } catch (RuntimeException e) {
+            result.error = "failed to read the starting pose: " + e;
+            return result;
+        }
+        // the auto resets odometry to its starting pose, if it has one; the robot has to be there
+        if (start != null) {
+            sim.resetPose(start);
+        }
+        swerve.resetOdometry(sim.getPose());
+        target = null;
+
+        setEnabled(true);
+        CanPlan.PROFILES.setRobotMode(Mode.AUTONOMOUS);
+        command.schedule();
+        double startTime = Timer.getFPGATimestamp();
+        for (int i = 0; i < MAX_LOOPS && command.isScheduled(); i++) {
+            long loopStart = System.nanoTime();
+            step(robot);
+            result.loopNanos[result.loops++] = System.nanoTime() - loopStart;
+            if (target != null) {
+                result.track(sim.getPose(), target);
+            }
+        }
+        if (command.isScheduled()) {
+            command.cancel();
+            result.error = "did not finish in " + AUTO_SECONDS + " s";
+        } else {
+            result.completionSeconds = Timer.getFPGATimestamp() - startTime;
+        }
+        result.odometryError = swerve.getPose().getTranslation().getDistance(sim.getPose().getTranslation());
+        return result;
+    }
+
+    private static void setEnabled(boolean enabled) {
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    /** One 20ms loop: fast ticks for the period, then what TimedRobot does each loop in autonomous. */
+    private static void step(Robot robot) {
+        for (double elapsed = 0; elapsed < TimedRobot.kDefaultPeriod - 1e-9;
+                elapsed += FastLoopConstants.PERIOD_SECONDS) {
+            SimHooks.stepTiming(FastLoopConstants.PERIOD_SECONDS);
+            FastLoop.tick();
+        }
+        DriverStation.refreshData();
+        robot.autonomousPeriodic();
+        robot.robotPeriodic();
+        robot.simulationPeriodic();
+        SmartDashboard.updateValues();
+    }
+
+    private static String summary(List<Result> results) {
+        StringBuilder summary = new StringBuilder(String.format("Autonomous simulation, %d autos%n", results.size()));
+        summary.append(String.format("  %-32s %8s %10s %10s %10s %10s %10s %10s %10s %8s%n", "", "time s",
+                "rms err m", "max err m", "max hdg", "odom m", "loop ms", "p99 ms", "max ms", "speedup"));
+        for (Result result : results) {
+            summary.append(result.format()).append(System.lineSeparator());
+        }
+        long passed = results.stream().filter(Result::passed).count();
+        summary.append(String.format("  %d passed, %d failed%n", passed, results.size() - passed));
+        return summary.toString();
+    }
+
+    /** Measurements from one auto. */
+    private static final class Result {
+        private final String name;
+        private final long[] loopNanos = new long[MAX_LOOPS];
+        private int loops = 0;
+        private String error;
+        private double completionSeconds = Double.NaN;
+        private double odometryError = Double.NaN;
+        private int tracked = 0;
+        private double squaredErrorSum = 0;
+        private double maxError = 0;
+        private double maxHeadingError = 0;
+
+        private Result(String name) {
+            this.name = name;
+        }
+
+        private boolean passed() {
+            return error == null;
+        }
+
+        private void track(Pose2d truth, Pose2d target) {
+            double distance = truth.getTranslation().getDistance(target.getTranslation());
+            squaredErrorSum += distance * distance;
+            maxError = Math.max(maxError, distance);
+            maxHeadingError = Math.max(maxHeadingError,
+                    Math.abs(truth.getRotation().minus(target.getRotation()).getDegrees()));
+            tracked++;
+        }
+
+        private String format() {
+            String row = String.format("  %-32s", name);
+            if (error != null && loops == 0) {
+                return row + "  " + error;
+            }
+            long[] sorted = Arrays.copyOf(loopNanos, loops);
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+            double p99 = sorted[Math.min(loops - 1, (int) Math.ceil(loops * 0.99) - 1)] / 1e6;
+            double max = sorted[loops - 1] / 1e6;
+            double speedup = loops * TimedRobot.kDefaultPeriod / (Arrays.stream(sorted).sum() / 1e9);
+            row += String.format(" %8.2f %10.3f %10.3f %10.1f %10.3f %10.3f %10.3f %10.3f %7.0fx",
+                    completionSeconds,
+                    tracked == 0 ? 0 : Math.sqrt(squaredErrorSum / tracked),
+                    maxError, maxHeadingError, odometryError, mean, p99, max, speedup);
+            return error == null ? row : row + "  " + error;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package frc.robot.sim;
+
+import edu.wpi.first.hal.SimDouble;
+import edu.wpi.first.hal.simulation.SimDeviceDataJNI.SimDeviceInfo;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimDeviceSim;
+import frc.lib.LoopProfiler;
+import frc.robot.Constants;
+
+/**
+ * Physics simulation of the swerve drivetrain. Steps every {@link SwerveModuleSim} at a fixed
+ * sub-step, integrates the chassis twist they produce into a ground truth pose, and feeds the
+ * heading to the navX's sim device so Swerve reads its yaw the same way it does on the robot.
+ *
+ * <p>Call {@link #update()} once per loop. It catches up to the FPGA clock in steps of at most
+ * {@link Constants.Swerve#SIM_SUBSTEP_SECONDS}, so it follows a HAL sim clock that is stepped
+ * faster than real time as well as the wall clock. Setpoints sent between two updates, e.g. by the
+ * fast loop, only count from the next update.
+ *
+ * <p>The ground truth is separate from odometry: resetting odometry to a path's start pose
+ * doesn't move the simulated robot, use {@link #resetPose} for that.
+ *
+ * <p>Profiled as {@value #PROFILER_NAME}. The physics allocates, and isn't robot code, so
+ * the teleop allocation test leaves it out of the budget.
+ */
+public class SwerveDriveSim {
+    public static final String PROFILER_NAME = "Sim/Swerve";
+
+    private final SwerveModuleSim[] modules;
+    private final SwerveModuleState[] states;
+    private final SimDouble navXYaw;
+    private double substepSeconds = Constants.Swerve.SIM_SUBSTEP_SECONDS;
+
+    private Pose2d pose = Constants.Swerve.INITIAL_POSE;
+    // what the gyro has integrated, which a pose reset doesn't change
+    private double gyroHeadingRadians = 0;
+    private double lastTimestamp = Double.NaN;
+    private LoopProfiler.Entry profile;
+
+    public SwerveDriveSim(SwerveModuleSim... modules) {
+        this.modules = modules;
+        states = new SwerveModuleState[modules.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new SwerveModuleState();
+        }
+        navXYaw = findNavXYaw();
+        if (navXYaw == null) {
+            DriverStation.reportWarning("SwerveDriveSim: no navX sim device, the gyro will not turn", false);
+        }
+    }
+
+    private static SimDouble findNavXYaw() {
+        SimDeviceInfo[] devices = SimDeviceSim.enumerateDevices("navX-Sensor");
+        if (devices.length == 0) {
+            return null;
+        }
+        return new SimDeviceSim(devices[0].name).getDouble("Yaw");
+    }
+
+    /** Advances the simulation to the current FPGA time. */
+    public void update() {
+        if (!LoopProfiler.isEnabled()) {
+            step();
+            return;
+        }
+        if (profile == null) {
+            profile = LoopProfiler.entry(PROFILER_NAME);
+        }
+        long start = profile.start();
+        step();
+        profile.stop(start);
+    }
+
+    private void step() {
+        double now = Timer.getFPGATimestamp();
+        double dt = Double.isNaN(lastTimestamp) ? TimedRobot.kDefaultPeriod : now - lastTimestamp;
+        lastTimestamp = now;
+        if (dt <= 0) {
+            return;
+        }
+        boolean enabled = DriverStation.isEnabled();
+        int steps = Math.max(1, (int) Math.ceil(dt / substepSeconds - 1e-9));
+        double step = dt / steps;
+        for (int i = 0; i < steps; i++) {
+            for (SwerveModuleSim module : modules) {
+                module.update(step, enabled);
+            }
+            integrateChassis(step);
+        }
+        for (SwerveModuleSim module : modules) {
+            module.updateCanCoder();
+        }
+        if (navXYaw != null) {
+            double headingDegrees = Math.toDegrees(gyroHeadingRadians);
+            // the navX is CW positive, see Constants.Swerve.INVERT_GYRO
+            double yaw = Constants.Swerve.INVERT_GYRO ? -headingDegrees : headingDegrees;
+            navXYaw.set(MathUtil.inputModulus(yaw, -180, 180));
+        }
+    }
+
+    private void integrateChassis(double dtSeconds) {
+        for (int i = 0; i < modules.length; i++) {
+            states[i].speedMetersPerSecond = modules[i].getDriveVelocity();
+            states[i].angle = Rotation2d.fromDegrees(modules[i].getAngleDegrees());
+        }
+        ChassisSpeeds speeds = Constants.Swerve.SWERVE_KINEMATICS.toChassisSpeeds(states);
+        pose = pose.exp(new Twist2d(speeds.vxMetersPerSecond * dtSeconds, speeds.vyMetersPerSecond * dtSeconds,
+            speeds.omegaRadiansPerSecond * dtSeconds));
+        gyroHeadingRadians += speeds.omegaRadiansPerSecond * dtSeconds;
+    }
+
+    /** Where the simulated robot really is. */
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    /** Moves the simulated robot, without turning the gyro. */
+    public void resetPose(Pose2d pose) {
+        this.pose = pose;
+    }
+
+    /** @param substepSeconds physics step, the default is {@link Constants.Swerve#SIM_SUBSTEP_SECONDS} */
+    public void setSubstepSeconds(double substepSeconds) {
+        this.substepSeconds = substepSeconds;
+    }
+
+    /** @return current drawn by all the drivetrain motors at the last step, in amps */
+    public double getCurrentDrawAmps() {
+        double total = 0;
+        for (SwerveModuleSim module : modules) {
+            total += module.getCurrentDrawAmps();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,157 @@
+package frc.robot.sim;
+
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.sim.CANcoderSimState;
+import com.revrobotics.CANSparkBase.ControlType;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.lib.util.SparkReferenceFilter;
+import frc.robot.Constants;
+
+/**
+ * Physics of one swerve module: a NEO drive characterized by {@code DRIVE_KS/KV/KA} and a NEO
+ * steering through {@code ANGLE_GEAR_RATIO}. The Sparks' onboard control loops are played from the
+ * last setpoint each one was sent, with the gains SwerveModule configures, so the module code runs
+ * unchanged against it.
+ *
+ * <p>Stepped by {@link SwerveDriveSim}. Positions are read by the odometry thread, so they're
+ * published through volatiles.
+ */
+public class SwerveModuleSim {
+    private static final double WHEEL_RADIUS = Constants.Swerve.WHEEL_DIAMETER / 2.0;
+    // The Spark's closed loop period, the unit of its derivative gain
+    private static final double SPARK_LOOP_SECONDS = 0.001;
+    // Below this wheel speed, in rad/s, static friction holds the wheel
+    private static final double STICTION_VELOCITY = 1e-3;
+
+    private final SparkReferenceFilter driveReference;
+    private final SparkReferenceFilter angleReference;
+    private final CANcoderSimState canCoder;
+    private final double angleOffsetDegrees;
+
+    /* SysId gains are per m/s of wheel speed, the plant is in wheel radians */
+    private final DCMotorSim driveSim = new DCMotorSim(
+        LinearSystemId.createDCMotorSystem(Constants.Swerve.DRIVE_KV * WHEEL_RADIUS,
+            Constants.Swerve.DRIVE_KA * WHEEL_RADIUS),
+        DCMotor.getNEO(1), Constants.Swerve.DRIVE_GEAR_RATIO);
+    private final DCMotorSim steerSim = new DCMotorSim(
+        DCMotor.getNEO(1), Constants.Swerve.ANGLE_GEAR_RATIO, Constants.Swerve.SIM_STEER_MOI);
+    private double lastAngleError = 0;
+
+    private volatile double drivePositionMeters = 0;
+    private volatile double driveVelocity = 0;
+    private volatile double angleDegrees = 0;
+
+    /**
+     * @param angleOffsetDegrees the module's CANcoder offset, so the simulated absolute reading
+     *                           lines up with the wheel
+     */
+    public SwerveModuleSim(SparkReferenceFilter driveReference, SparkReferenceFilter angleReference,
+            CANcoder canCoder, double angleOffsetDegrees) {
+        this.driveReference = driveReference;
+        this.angleReference = angleReference;
+        this.canCoder = canCoder.getSimState();
+        this.angleOffsetDegrees = angleOffsetDegrees;
+        updateCanCoder();
+    }
+
+    /**
+     * Advances the module by {@code dtSeconds}.
+     *
+     * @param enabled false to neutral both motors, as the Sparks do when the robot is disabled
+     */
+    public void update(double dtSeconds, boolean enabled) {
+        double driveVolts = enabled ? driveVolts() : 0;
+        double steerVolts = enabled ? steerVolts(dtSeconds) : 0;
+
+        // static friction, as a voltage opposing motion
+        double velocity = driveSim.getAngularVelocityRadPerSec();
+        if (Math.abs(velocity) < STICTION_VELOCITY && Math.abs(driveVolts) <= Constants.Swerve.DRIVE_KS) {
+            driveSim.setState(driveSim.getAngularPositionRad(), 0);
+            driveSim.setInputVoltage(0);
+        } else {
+            double direction = Math.abs(velocity) < STICTION_VELOCITY ? Math.signum(driveVolts) : Math.signum(velocity);
+            driveSim.setInputVoltage(driveVolts - Constants.Swerve.DRIVE_KS * direction);
+        }
+        steerSim.setInputVoltage(steerVolts);
+        driveSim.update(dtSeconds);
+        steerSim.update(dtSeconds);
+
+        drivePositionMeters = driveSim.getAngularPositionRad() * WHEEL_RADIUS;
+        driveVelocity = driveSim.getAngularVelocityRadPerSec() * WHEEL_RADIUS;
+        angleDegrees = Math.toDegrees(steerSim.getAngularPositionRad());
+    }
+
+    /** Pushes the wheel angle to the simulated CANcoder. Once per loop is enough. */
+    public void updateCanCoder() {
+        canCoder.setRawPosition((angleDegrees + angleOffsetDegrees) / 360.0);
+        canCoder.setVelocity(steerSim.getAngularVelocityRadPerSec() / (2 * Math.PI));
+    }
+
+    /* Velocity closed loop: P and FF in duty cycle per m/s, arbitrary feedforward in volts */
+    private double driveVolts() {
+        ControlType type = driveReference.getLastControlType();
+        if (type == null) {
+            return 0;
+        }
+        double setpoint = driveReference.getLastValue();
+        double volts;
+        switch (type) {
+            case kDutyCycle:
+                volts = setpoint * Constants.Swerve.VOLTAGE_COMP;
+                break;
+            case kVoltage:
+                volts = setpoint;
+                break;
+            case kVelocity:
+                double output = Constants.Swerve.DRIVE_KP * (setpoint - driveVelocity)
+                    + Constants.Swerve.DRIVE_KFF * setpoint;
+                volts = MathUtil.clamp(output, -1, 1) * Constants.Swerve.VOLTAGE_COMP
+                    + driveReference.getLastArbFeedforward();
+                break;
+            default:
+                volts = 0;
+        }
+        return MathUtil.clamp(volts, -Constants.Swerve.VOLTAGE_COMP, Constants.Swerve.VOLTAGE_COMP);
+    }
+
+    /* Position closed loop in degrees, wrapped to -180..180 like the Spark's position wrapping */
+    private double steerVolts(double dtSeconds) {
+        ControlType type = angleReference.getLastControlType();
+        if (type == ControlType.kDutyCycle) {
+            return MathUtil.clamp(angleReference.getLastValue(), -1, 1) * Constants.Swerve.VOLTAGE_COMP;
+        }
+        if (type != ControlType.kPosition) {
+            return 0;
+        }
+        double setpoint = angleReference.getLastValue();
+        double error = MathUtil.inputModulus(setpoint - angleDegrees, -180, 180);
+        double output = Constants.Swerve.ANGLE_KP * error
+            + Constants.Swerve.ANGLE_KD * (error - lastAngleError) * SPARK_LOOP_SECONDS / dtSeconds
+            + Constants.Swerve.ANGLE_KFF * setpoint;
+        lastAngleError = error;
+        return MathUtil.clamp(output, -1, 1) * Constants.Swerve.VOLTAGE_COMP;
+    }
+
+    public double getDrivePositionMeters() {
+        return drivePositionMeters;
+    }
+
+    /** @return wheel speed in m/s */
+    public double getDriveVelocity() {
+        return driveVelocity;
+    }
+
+    /** @return module angle in degrees, continuous like the Spark's encoder */
+    public double getAngleDegrees() {
+        return angleDegrees;
+    }
+
+    /** @return current drawn by both motors, in amps */
+    public double getCurrentDrawAmps() {
+        return Math.abs(driveSim.getCurrentDrawAmps()) + Math.abs(steerSim.getCurrentDrawAmps());
+    }
+}
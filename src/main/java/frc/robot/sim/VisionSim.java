@@ -0,0 +1,102 @@
+package frc.robot.sim;
+
+import java.util.function.Supplier;
+
+import org.photonvision.PhotonCamera;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.lib.Telemetry;
+import frc.lib.math.PoseHistory;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Simulated PhotonVision coprocessors for the cameras in {@link VisionConstants#CAMERAS}. Each
+ * loop the tags in the field layout are rendered from the ground truth robot pose at the
+ * configured FPS, latency and pixel noise, and published on the same topics as real cameras, so
+ * {@link frc.robot.subsystems.Vision} runs unchanged.
+ *
+ * <p>The ground truth is recorded with timestamps so every measurement Vision produces can be
+ * scored against where the robot really was when the frame was taken. Position error is published
+ * under Vision/Sim, and throughput under the usual per camera Frames Per Second.
+ */
+public class VisionSim {
+    private final VisionSystemSim system = new VisionSystemSim("main");
+    private final Supplier<Pose2d> groundTruth;
+    private final PoseHistory truthHistory = new PoseHistory(VisionConstants.SIM_TRUTH_HISTORY_SIZE);
+    private final double[] truth = new double[3];
+
+    private final Telemetry.DoubleTelemetry errorTelemetry = Telemetry.number("Vision/Sim/Pose Error m", 0, 0.001);
+    private final Telemetry.DoubleTelemetry rmsErrorTelemetry = Telemetry.number("Vision/Sim/RMS Pose Error m", 0.5, 0);
+    private final Telemetry.DoubleTelemetry maxErrorTelemetry = Telemetry.number("Vision/Sim/Max Pose Error m", 0.5, 0);
+    private final Telemetry.DoubleTelemetry headingErrorTelemetry = Telemetry.number("Vision/Sim/Heading Error deg", 0, 0.01);
+    private long scored = 0;
+    private double squaredErrorSum = 0;
+    private double maxError = 0;
+
+    /**
+     * @param groundTruth where the robot really is, e.g. the drivetrain physics simulation
+     */
+    public VisionSim(AprilTagFieldLayout fieldLayout, Supplier<Pose2d> groundTruth) {
+        this.groundTruth = groundTruth;
+        system.addAprilTags(fieldLayout);
+        SmartDashboard.putData("Vision Sim Field", system.getDebugField());
+    }
+
+    /** Renders {@code camera} at {@code robotToCamera} with the simulated camera properties. */
+    public void addCamera(PhotonCamera camera, Transform3d robotToCamera) {
+        SimCameraProperties properties = new SimCameraProperties();
+        properties.setCalibration(VisionConstants.SIM_RESOLUTION_WIDTH, VisionConstants.SIM_RESOLUTION_HEIGHT,
+            Rotation2d.fromDegrees(VisionConstants.SIM_DIAGONAL_FOV_DEGREES));
+        properties.setCalibError(VisionConstants.SIM_CALIB_ERROR_PX, VisionConstants.SIM_CALIB_ERROR_STD_DEV_PX);
+        properties.setFPS(VisionConstants.SIM_FPS);
+        properties.setAvgLatencyMs(VisionConstants.SIM_AVG_LATENCY_MS);
+        properties.setLatencyStdDevMs(VisionConstants.SIM_LATENCY_STD_DEV_MS);
+        system.addCamera(new PhotonCameraSim(camera, properties), robotToCamera);
+    }
+
+    /** Publishes whatever frames the simulated cameras have produced by now. Call once per loop. */
+    public void update() {
+        Pose2d pose = groundTruth.get();
+        truthHistory.add(Timer.getFPGATimestamp(), pose);
+        system.update(pose);
+    }
+
+    /** Scores a vision measurement against the ground truth at its timestamp. */
+    public void score(Pose2d measured, double timestamp) {
+        if (!truthHistory.sample(timestamp, truth)) {
+            return;
+        }
+        double error = Math.hypot(measured.getX() - truth[0], measured.getY() - truth[1]);
+        scored++;
+        squaredErrorSum += error * error;
+        maxError = Math.max(maxError, error);
+        errorTelemetry.set(error);
+        rmsErrorTelemetry.set(Math.sqrt(squaredErrorSum / scored));
+        maxErrorTelemetry.set(maxError);
+        headingErrorTelemetry.set(Math.toDegrees(
+            Math.abs(measured.getRotation().minus(Rotation2d.fromRadians(truth[2])).getRadians())));
+    }
+
+    /** Measurements scored so far. */
+    public long getScored() {
+        return scored;
+    }
+
+    /** @return RMS position error of the scored measurements, in meters */
+    public double getRmsError() {
+        return scored == 0 ? 0 : Math.sqrt(squaredErrorSum / scored);
+    }
+
+    /** @return largest position error of a scored measurement, in meters */
+    public double getMaxError() {
+        return maxError;
+    }
+}
@@ -0,0 +1,100 @@
+package frc.robot.subsystems;
+
+import java.util.List;
+
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import frc.lib.math.HeadingHistory;
+import frc.lib.util.AprilTagIndex;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Picks between the two PnP solutions of a single-tag frame using the gyro. Each solution implies
+ * a robot heading; the one closest to the NavX heading at the frame timestamp wins, and the frame
+ * is dropped if neither is within {@link VisionConstants#AMBIGUITY_HEADING_TOLERANCE_DEGREES}.
+ *
+ * <p>The heading comes from the raw gyro history Swerve keeps, in field coordinates through the
+ * offset set when odometry was last reset. Vision corrections never touch it, so a wrong solution
+ * that got into the estimate can't vouch for the next one.
+ *
+ * <p>The chosen solution is written to both best and alt so pose strategies that also look at the
+ * alternate, like closest to reference pose, can't undo the choice. Used from one camera worker.
+ */
+public class AmbiguityResolver {
+  private final Transform3d cameraToRobot;
+  private final AprilTagIndex tagIndex;
+  private final HeadingHistory gyroHistory;
+
+  /* written by the worker, read by the main loop */
+  private volatile long resolved = 0;
+  private volatile long flipped = 0;
+  private volatile long rejected = 0;
+
+  public AmbiguityResolver(Transform3d robotToCamera, AprilTagIndex tagIndex, HeadingHistory gyroHistory) {
+    this.cameraToRobot = robotToCamera.inverse();
+    this.tagIndex = tagIndex;
+    this.gyroHistory = gyroHistory;
+  }
+
+  /**
+   * @return {@code result} itself, a copy with the alternate solution chosen, or null to drop the
+   *         frame
+   */
+  public PhotonPipelineResult resolve(PhotonPipelineResult result) {
+    if (result.getTargets().size() != 1) {
+      return result;
+    }
+    PhotonTrackedTarget target = result.getTargets().get(0);
+    Pose3d tagPose = tagIndex.getPose3d(target.getFiducialId());
+    double gyroHeading = gyroHistory.sample(result.getTimestampSeconds());
+    if (tagPose == null || Double.isNaN(gyroHeading)) {
+      return result;
+    }
+    double tolerance = Math.toRadians(VisionConstants.AMBIGUITY_HEADING_TOLERANCE_DEGREES);
+    double bestError = headingError(tagPose, target.getBestCameraToTarget(), gyroHeading);
+    double altError = headingError(tagPose, target.getAlternateCameraToTarget(), gyroHeading);
+
+    if (bestError <= altError && bestError <= tolerance) {
+      resolved = resolved + 1;
+      return result;
+    }
+    if (altError < bestError && altError <= tolerance) {
+      flipped = flipped + 1;
+      Transform3d alt = target.getAlternateCameraToTarget();
+      PhotonTrackedTarget chosen = new PhotonTrackedTarget(target.getYaw(), target.getPitch(), target.getArea(),
+          target.getSkew(), target.getFiducialId(), alt, alt, target.getPoseAmbiguity(),
+          target.getMinAreaRectCorners(), target.getDetectedCorners());
+      PhotonPipelineResult copy = new PhotonPipelineResult(result.getLatencyMillis(), List.of(chosen));
+      copy.setTimestampSeconds(result.getTimestampSeconds());
+      return copy;
+    }
+    rejected = rejected + 1;
+    return null;
+  }
+
+  /* |robot heading implied by cameraToTarget - gyro heading| */
+  private double headingError(Pose3d tagPose, Transform3d cameraToTarget, double gyroHeading) {
+    double heading = tagPose.transformBy(cameraToTarget.inverse()).transformBy(cameraToRobot)
+        .getRotation().getZ();
+    return Math.abs(MathUtil.angleModulus(heading - gyroHeading));
+  }
+
+  /** Single-tag frames where the best solution agreed with the gyro. */
+  public long getResolved() {
+    return resolved;
+  }
+
+  /** Single-tag frames where the alternate solution was used instead. */
+  public long getFlipped() {
+    return flipped;
+  }
+
+  /** Single-tag frames dropped because neither solution agreed with the gyro. */
+  public long getRejected() {
+    return rejected;
+  }
+}
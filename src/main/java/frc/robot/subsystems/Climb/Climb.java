@@ -9,11 +9,12 @@ import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.ProfiledSubsystem;
+import frc.robot.CanPlan;
 import frc.robot.Constants;
 import frc.robot.Constants.ClimbConstants;
 
-public class Climb extends SubsystemBase {
+public class Climb extends ProfiledSubsystem {
   private CANSparkMax leftClimb;
   private CANSparkMax rightClimb;
   private RelativeEncoder leftClimbEncoder;
@@ -25,10 +26,12 @@ public class Climb extends SubsystemBase {
 
     leftClimbEncoder = leftClimb.getEncoder();
     leftClimbEncoder.setPositionConversionFactor(0.50);
+    CanPlan.PROFILES.register(leftClimb);
+    CanPlan.PROFILES.register(rightClimb);
   }
   
   @Override
-  public void periodic() {
+  protected void profiledPeriodic() {
     // This method will be called once per scheduler run
   }
 
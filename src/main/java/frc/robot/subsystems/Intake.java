@@ -16,13 +16,18 @@ import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.lib.HeroSparkPID;
+import frc.lib.ProfiledSubsystem;
+import frc.lib.SensorFrame;
+import frc.lib.Telemetry;
+import frc.lib.util.SparkConfig;
+import frc.lib.util.SparkConfigurator;
+import frc.robot.CanPlan;
 import frc.robot.Constants;
 import frc.robot.Constants.IntakeConstants;
 
-public class Intake extends SubsystemBase{
+public class Intake extends ProfiledSubsystem {
 
   private CANSparkMax intakeMotor;
   private CANSparkMax deployMotor;
@@ -38,6 +43,13 @@ public class Intake extends SubsystemBase{
     (https://docs.revrobotics.com/sparkmax/operating-modes/using-encoders/alternate-encoder-mode) and use getAlternateEncoder() */
     private SparkAbsoluteEncoder deployEncoder; 
 
+  /* Sensor snapshot, filled once per loop by readSensors() */
+  private double deployRotation;
+  private double deployIntegratedPosition;
+  private boolean beamBreakValue;
+  private boolean deployLimitSwitchValue;
+  private boolean retractLimitSwitchValue;
+
   /* Creates a new GroundIntake. */
   public Intake() {
 
@@ -50,31 +62,56 @@ public class Intake extends SubsystemBase{
     deployLimitSwitch = new DigitalInput(IntakeConstants.DEPLOY_LIMIT_SWITCH_DIO_PORT_ID);
     retractLimitSwitch = new DigitalInput(IntakeConstants.RETRACT_LIMIT_SWITCH_DIO_PORT_ID);
 
-    deployController = new HeroSparkPID(deployMotor).useAbsoluteEncoder();
-    deployController.setPID(IntakeConstants.DEPLOY_PID);
-    deployMotor.burnFlash();
+    // only burns if the stored gains differ; the config owns the gains and feedback device,
+    // so the controller is built from it without sending them again
+    SparkConfig deployConfig = new SparkConfig()
+        .pid(IntakeConstants.DEPLOY_PID.kP, IntakeConstants.DEPLOY_PID.kI, IntakeConstants.DEPLOY_PID.kD, 0)
+        .absoluteEncoderFeedback()
+        .always(CanPlan.PROFILES::register);
+    SparkConfigurator.submit("Intake deploy", deployMotor, deployConfig);
+    deployController = new HeroSparkPID(deployMotor, deployConfig);
+    CanPlan.PROFILES.register(intakeMotor);
 
     SmartDashboard.putData("Intake/subsystem",this);
     SmartDashboard.putData("Intake/pid",deployController);
+
+    readSensors();
+    SensorFrame.register(this::readSensors);
   }
 
+  private void readSensors() {
+    deployRotation = deployEncoder.getPosition();
+    deployIntegratedPosition = deployMotor.getEncoder().getPosition();
+    beamBreakValue = beamBreak.get();
+    deployLimitSwitchValue = deployLimitSwitch.get();
+    retractLimitSwitchValue = retractLimitSwitch.get();
+  }
+
+  /* Telemetry */
+  private final Telemetry.DoubleTelemetry deployRotationTelemetry = Telemetry.number("Intake/DeployRotations", 0, 0.001);
+  private final Telemetry.DoubleTelemetry deployIntegratedTelemetry = Telemetry.number("Intake/deployIntegrated", 0, 0.001);
+  private final Telemetry.DoubleTelemetry setpointTelemetry = Telemetry.number("Intake/Setpoint");
+  private final Telemetry.BooleanTelemetry deployTelemetry = Telemetry.bool("Intake/deploy");
+  private final Telemetry.BooleanTelemetry retractTelemetry = Telemetry.bool("Intake/retract");
+  private final Telemetry.BooleanTelemetry beamBreakTelemetry = Telemetry.bool("Intake/BeamBreak");
+
   @Override
-  public void periodic() {
+  protected void profiledPeriodic() {
     // stolen from super
 
 
-    SmartDashboard.putNumber("Intake/DeployRotations", this.getDeployRotation());
+    deployRotationTelemetry.set(this.getDeployRotation());
     //SmartDashboard.putNumber("Intake Speed", deployController.calculate(getDeployRotation(), 0.6));
-    SmartDashboard.putNumber("Intake/deployIntegrated", deployMotor.getEncoder().getPosition()); 
-    SmartDashboard.putNumber("Intake/Setpoint", deployController.getReference());
-    SmartDashboard.putBoolean("Intake/deploy", !deployLimitSwitch.get());
-    SmartDashboard.putBoolean("Intake/retract", !retractLimitSwitch.get());
-    SmartDashboard.putBoolean("Intake/BeamBreak", !beamBreak.get());
+    deployIntegratedTelemetry.set(deployIntegratedPosition); 
+    setpointTelemetry.set(deployController.getReference());
+    deployTelemetry.set(!deployLimitSwitchValue);
+    retractTelemetry.set(!retractLimitSwitchValue);
+    beamBreakTelemetry.set(!beamBreakValue);
   }
 
   /* Other Functions */
     public double getDeployRotation() {
-      return deployEncoder.getPosition();
+      return deployRotation;
     }
 
     public void coastMode() {
@@ -104,10 +141,12 @@ public class Intake extends SubsystemBase{
   /* Deploying */  
     public void setDeploySpeed(double speed) {
       deployMotor.set(speed);
+      deployController.invalidateReference();
     }
 
     public void stopDeploy() {
       deployMotor.set(0);
+      deployController.invalidateReference();
       deployController.setReference(0, ControlType.kPosition);
 
     }
@@ -137,13 +176,13 @@ public class Intake extends SubsystemBase{
       public Command deployIntakeCommand() {
         // return startEnd(() -> setDeploySetPoint(IntakeConstants.deployRotations), this::stopDeploy).until(() -> deployEncoder.getPosition() <= IntakeConstants.deployRotations ||deployLimitSwitch.get()).andThen(() -> deployMotor.setIdleMode(IdleMode.kCoast));
         return startEnd(()->this.setDeploySpeed(IntakeConstants.DEPLOY_SPEED), this::stopDeploy)
-        .until(() -> getDeployRotation() <= IntakeConstants.DEPLOY_ROTATIONS||!deployLimitSwitch.get());
+        .until(() -> getDeployRotation() <= IntakeConstants.DEPLOY_ROTATIONS||!deployLimitSwitchValue);
       }
 
       public Command retractIntakeCommand(double speed) {
         // return startEnd(() -> setDeploySetPoint(IntakeConstants.retractRotations), this::stopDeploy).until(() ->  deployEncoder.getPosition() >= IntakeConstants.retractRotations).andThen(() -> deployMotor.setIdleMode(IdleMode.kBrake));
         return startEnd(()->this.setDeploySpeed(speed), this::stopDeploy)
-        .until(() -> getDeployRotation() >= IntakeConstants.RETRACT_ROTATIONS||!retractLimitSwitch.get());
+        .until(() -> getDeployRotation() >= IntakeConstants.RETRACT_ROTATIONS||!retractLimitSwitchValue);
       }
       public Command retractIntakeCommand() {
         return retractIntakeCommand(IntakeConstants.RETRACT_SPEED);
@@ -152,7 +191,7 @@ public class Intake extends SubsystemBase{
 
     /* Test Commands */
       public Command intakeNoteCommand(XboxController controller,XboxController controller2) {
-        return startEnd(() -> this.intakeNote(), this::stopIntake).until(() -> beamBreak.get()).andThen(() -> {
+        return startEnd(() -> this.intakeNote(), this::stopIntake).until(() -> beamBreakValue).andThen(() -> {
           controller.setRumble(RumbleType.kBothRumble, 1);
           controller2.setRumble(RumbleType.kBothRumble, 1);
         }).andThen(new WaitCommand(0.25)).andThen(()->{
@@ -6,10 +6,10 @@ package frc.robot.subsystems;
 
 import edu.wpi.first.wpilibj.AddressableLED;
 import edu.wpi.first.wpilibj.AddressableLEDBuffer;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.ProfiledSubsystem;
 import frc.robot.Constants;
 
-public class LedSub extends SubsystemBase {
+public class LedSub extends ProfiledSubsystem {
   private AddressableLED m_led;
   private AddressableLEDBuffer m_ledBuffer;
 
@@ -24,7 +24,7 @@ public class LedSub extends SubsystemBase {
   }
 
   @Override
-  public void periodic() {
+  protected void profiledPeriodic() {
     // This method will be called once per scheduler run
   }
 
@@ -14,13 +14,16 @@ import edu.wpi.first.units.Voltage;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
+import frc.robot.CanPlan;
 import frc.robot.Constants.ShooterConstants;
 import frc.lib.HeroSparkPID;
+import frc.lib.ProfiledSubsystem;
+import frc.lib.SensorFrame;
+import frc.lib.Telemetry;
 
-public class Shooter extends SubsystemBase {
+public class Shooter extends ProfiledSubsystem {
   /** Creates a new Shooter. */
   CANSparkMax leftKicker;
   CANSparkMax rightKicker;
@@ -33,9 +36,15 @@ public class Shooter extends SubsystemBase {
   HeroSparkPID leftController;
   HeroSparkPID rightController;
 
+  /* Sensor snapshot, filled once per loop by readSensors() */
+  private double leftSpeed;
+  private double rightSpeed;
+
   public Shooter() {
     leftKicker = new CANSparkMax(ShooterConstants.LEFT_KICKER_MOTOR_ID, MotorType.kBrushless);
     rightKicker = new CANSparkMax(ShooterConstants.RIGHT_KICKER_MOTOR_ID, MotorType.kBrushless);
+    CanPlan.PROFILES.register(leftKicker);
+    CanPlan.PROFILES.register(rightKicker);
 
     // rightFeederMotor.follow(leftFeederMotor, false);
     lShootRoutine = new SysIdRoutine(
@@ -63,29 +72,38 @@ public class Shooter extends SubsystemBase {
     SmartDashboard.putData("Shooter/SysId/right/dynamic backward", rSysIdDynamic(Direction.kReverse));
     SmartDashboard.putData("Shooter/SysId/right/quasistatic forward", rSysIdQuasistatic(Direction.kForward));
     SmartDashboard.putData("Shooter/SysId/right/quasistatic backward", rSysIdQuasistatic(Direction.kReverse));
+
+    SensorFrame.register(this::readSensors);
+  }
+
+  private void readSensors() {
+    leftSpeed = leftController.getSpeed();
+    rightSpeed = rightController.getSpeed();
   }
 
 
   
   public void lShootVoltage(Measure<Voltage> volt) {
     leftKicker.setVoltage(volt.in(Units.Volts));
+    leftController.invalidateReference();
   }
   public void rShootVoltage(Measure<Voltage> volt) {
     rightKicker.setVoltage(volt.in(Units.Volts));
+    rightController.invalidateReference();
   }
   public Command lSysIdQuasistatic(SysIdRoutine.Direction direction) {
-    return lShootRoutine.quasistatic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(lShootRoutine.quasistatic(direction));
   }
 
   public Command lSysIdDynamic(SysIdRoutine.Direction direction) {
-    return lShootRoutine.dynamic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(lShootRoutine.dynamic(direction));
   }
   public Command rSysIdQuasistatic(SysIdRoutine.Direction direction) {
-    return rShootRoutine.quasistatic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(rShootRoutine.quasistatic(direction));
   }
 
   public Command rSysIdDynamic(SysIdRoutine.Direction direction) {
-    return rShootRoutine.dynamic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(rShootRoutine.dynamic(direction));
   }
 
 
@@ -105,6 +123,8 @@ public class Shooter extends SubsystemBase {
   public void stopKickerMotors() {
     rightKicker.set(0);
     leftKicker.set(0);
+    rightController.invalidateReference();
+    leftController.invalidateReference();
   }
 
   private void setKickerSpeedsFromSmartDashboard() {
@@ -149,10 +169,14 @@ public class Shooter extends SubsystemBase {
                                                     //then interrupt all commands, stopping outtake and shooter
   }
 
+  /* Telemetry */
+  private final Telemetry.DoubleTelemetry leftSpeedTelemetry = Telemetry.number("Shooter/leftRealSpeed", 0, 1);
+  private final Telemetry.DoubleTelemetry rightSpeedTelemetry = Telemetry.number("Shooter/rightRealSpeed", 0, 1);
+
   @Override
-  public void periodic() {
-    SmartDashboard.putNumber("Shooter/leftRealSpeed",leftController.getSpeed());
-    SmartDashboard.putNumber("Shooter/rightRealSpeed",rightController.getSpeed());
+  protected void profiledPeriodic() {
+    leftSpeedTelemetry.set(leftSpeed);
+    rightSpeedTelemetry.set(rightSpeed);
 
     // This method will be called once per scheduler run
   }
@@ -1,5 +1,9 @@
 package frc.robot.subsystems;
 
+import java.util.Arrays;
+import java.util.Optional;
+
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.kauailabs.navx.frc.AHRS;
 import com.pathplanner.lib.auto.AutoBuilder;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
@@ -17,24 +21,46 @@ import edu.wpi.first.units.Voltage;
 import edu.wpi.first.wpilibj.BuiltInAccelerometer;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Preferences;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
+import frc.lib.FastLoop;
+import frc.lib.LoopProfiler;
+import frc.lib.OdometryThread;
+import frc.lib.ProfiledSubsystem;
+import frc.lib.SensorFrame;
+import frc.lib.Telemetry;
+import frc.lib.math.HeadingHistory;
+import frc.lib.math.InPlaceSwerveKinematics;
+import frc.lib.math.ModuleState;
+import frc.lib.math.PoseHistory;
+import frc.lib.util.SparkConfigurator;
+import frc.robot.CanPlan;
 import frc.robot.Constants;
 import frc.robot.Constants.AutoConstants;
+import frc.robot.sim.SwerveDriveSim;
+import frc.robot.sim.SwerveModuleSim;
 
 /*
 This is a class for the swerve drive system on the robot. It utilizes a navX gyro to measure the angle of the robot and a SwerveDriveOdometry to measure the position of the robot. There are four SwerveModule objects, each of which is responsible for the individual swerve module. The class also holds a Field2d object which is used for the robot's position with respect to the field.
 
 The drive() method is used to set the desired speed and angle for the robot. The user can decide if they want the desired rotation and speed to be relative to the field or the robot. The setModuleStates() and setModuleRotation() methods are used to set the desired states of each swerve module. The getPose() method returns the pose of the robot in meters. The resetOdometry() method resets the odometry of the robot to the given pose. The resetToAbsolute() method resets all of the swerve modules to the absolute position. The getStates() and getModulePositions() methods return the current states and positions of each swerve module. The zeroGyro() method sets the yaw of the robot to 0. The getYaw() method returns the yaw of the robot.
 
-In the periodic() method, the robot's odometry is updated, and the yaw of the robot is put to the SmartDashboard. The states and positions of each swerve module is also put to the SmartDashboard.
+Module positions and the gyro are sampled by an OdometryThread at Constants.Swerve.ODOMETRY_FREQUENCY, faster than the 20ms loop. In the periodic() method, every queued sample is fed to the pose estimator, and the yaw of the robot is put to the SmartDashboard. The states and positions of each swerve module is also put to the SmartDashboard.
+
+Apart from the odometry update, periodic() and drive() don't allocate. The pose estimator and Field2d allocate internally, and the estimator keeps the Rotation2d of every sample it is given, so those can't be reused while the angle changes. The odometry update is profiled on its own as ODOMETRY_PROFILER_NAME so its allocations can be told apart; see SwerveAllocationTest.
+
+The last drive() or driveRelative() request is solved again by the FastLoop between loops, with the live gyro yaw and module angles, for as long as a command keeps sending it.
+
+In simulation a SwerveDriveSim stands in for the motors, encoders and gyro, stepped in simulationPeriodic().
 */
 
-public class Swerve extends SubsystemBase {
+public class Swerve extends ProfiledSubsystem {
+  public static final String ODOMETRY_PROFILER_NAME = "Swerve/Odometry";
+
   private AHRS gyro;
 
   private SwerveDrivePoseEstimator swerveOdometry;
@@ -42,8 +68,62 @@ public class Swerve extends SubsystemBase {
 
   private Field2d field;
 
+  /* Odometry sample layout: gyro yaw in degrees, then drive distance and angle in degrees per module */
+  private static final int ODOMETRY_SAMPLE_WIDTH = 1 + 2 * 4;
+  private OdometryThread odometryThread;
+  private final SwerveModulePosition[] samplePositions = {
+      new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+  };
+  private final OdometryThread.SampleConsumer odometrySampleConsumer = this::applyOdometrySample;
+  /* Angles of the last sample applied, an angle that hasn't changed keeps its Rotation2d */
+  private final double[] sampleAngleDegrees = {Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+  private double sampleYawDegrees = Double.NaN;
+  private Rotation2d sampleYaw;
+  private LoopProfiler.Entry odometryProfile;
+  private final PoseHistory poseHistory = new PoseHistory(
+      (int) Math.ceil(Constants.Swerve.POSE_HISTORY_SECONDS * Constants.Swerve.ODOMETRY_FREQUENCY) + OdometryThread.CAPACITY);
+  /* Gyro heading alone, in field coordinates through the offset from the last odometry reset */
+  private final HeadingHistory gyroHistory = new HeadingHistory(
+      (int) Math.ceil(Constants.Swerve.POSE_HISTORY_SECONDS * Constants.Swerve.ODOMETRY_FREQUENCY) + OdometryThread.CAPACITY);
+  private double fieldToGyroRadians = Constants.Swerve.INITIAL_POSE.getRotation().getRadians();
+
+  /* Preallocated buffers so the drive path does not allocate every loop */
+  private final InPlaceSwerveKinematics kinematics = new InPlaceSwerveKinematics(Constants.Swerve.MODULE_TRANSLATIONS);
+  private final ModuleState[] setpointStates = {
+      new ModuleState(), new ModuleState(), new ModuleState(), new ModuleState()
+  };
+  private final ModuleState[] measuredStates = {
+      new ModuleState(), new ModuleState(), new ModuleState(), new ModuleState()
+  };
+  private final ModuleState[] desiredStates = new ModuleState[4];
+
+  /*
+   * Chassis request from drive() or driveRelative(), solved again by the fast loop against the
+   * live gyro and module angles. Only replayed while commands keep refreshing it.
+   */
+  private static final double FAST_DRIVE_TIMEOUT_SECONDS = 0.04;
+  private boolean fastDriveActive = false;
+  private double requestTimestamp;
+  private double requestX;
+  private double requestY;
+  private double requestRotation;
+  private boolean requestFieldRelative;
+  private boolean requestOpenLoop;
+
+  /* Every module's CANcoder signals, refreshed together once per loop */
+  private final BaseStatusSignal[] canCoderSignals;
+
+  /* Gyro snapshot, filled once per loop by readSensors() */
+  private double gyroYaw;
+  private double gyroPitch;
+  private double gyroRoll;
+  private double gyroAccelX;
+
   SysIdRoutine routine;
 
+  /* Drivetrain physics, only in simulation */
+  private SwerveDriveSim sim;
+
   public Swerve(AHRS gyro) {
 
     this.gyro = gyro;
@@ -55,6 +135,24 @@ public class Swerve extends SubsystemBase {
         new SwerveModule(2, Constants.Swerve.Mod2.CONSTANTS),
         new SwerveModule(3, Constants.Swerve.Mod3.CONSTANTS)
     };
+    // all eight Sparks configure in parallel
+    SparkConfigurator.awaitAll();
+    for (SwerveModule mod : mSwerveMods) {
+      mod.finishConfiguration();
+    }
+    for (SwerveModule mod : mSwerveMods) {
+      desiredStates[mod.moduleNumber] = mod.getDesiredState();
+    }
+    if (RobotBase.isSimulation()) {
+      sim = new SwerveDriveSim(Arrays.stream(mSwerveMods)
+          .map(SwerveModule::getSimulation)
+          .toArray(SwerveModuleSim[]::new));
+    }
+    canCoderSignals = Arrays.stream(mSwerveMods)
+        .flatMap(mod -> Arrays.stream(mod.getCanCoderSignals()))
+        .toArray(BaseStatusSignal[]::new);
+    readSensors();
+    SensorFrame.register(this::readSensors);
     swerveOdometry = new SwerveDrivePoseEstimator(Constants.Swerve.SWERVE_KINEMATICS, getYaw(),
         getModulePositions(), Constants.Swerve.INITIAL_POSE, Constants.Swerve.STATE_STD_DEVS,
         Constants.VisionConstants.VISION_MEASUREMENT_STANDARD_DEVIATIONS);
@@ -80,6 +178,48 @@ public class Swerve extends SubsystemBase {
     for (SwerveModule mod : mSwerveMods) {
       SmartDashboard.putData("Swerve/Modules/Mod "+mod.moduleNumber,mod);
     }
+
+    odometryThread = new OdometryThread(ODOMETRY_SAMPLE_WIDTH, Constants.Swerve.ODOMETRY_FREQUENCY, this::sampleOdometry);
+    odometryThread.start();
+    FastLoop.register(this::fastDrive);
+  }
+
+  private void readSensors() {
+    // one batched CAN read for all CANcoders instead of one per getter
+    BaseStatusSignal.refreshAll(canCoderSignals);
+    gyroYaw = gyro.getYaw();
+    gyroPitch = gyro.getPitch();
+    gyroRoll = gyro.getRoll();
+    gyroAccelX = gyro.getWorldLinearAccelX();
+    for (SwerveModule mod : mSwerveMods) {
+      mod.readSensors();
+    }
+  }
+
+  /* Runs on the odometry thread */
+  private void sampleOdometry(double[] sample) {
+    sample[0] = gyro.getYaw();
+    for (SwerveModule mod : mSwerveMods) {
+      sample[1 + 2 * mod.moduleNumber] = mod.getDriveDistance();
+      sample[2 + 2 * mod.moduleNumber] = mod.getAngleDegrees();
+    }
+  }
+
+  private void applyOdometrySample(double timestamp, double[] sample) {
+    for (int i = 0; i < samplePositions.length; i++) {
+      samplePositions[i].distanceMeters = sample[1 + 2 * i];
+      if (sample[2 + 2 * i] != sampleAngleDegrees[i]) {
+        sampleAngleDegrees[i] = sample[2 + 2 * i];
+        samplePositions[i].angle = Rotation2d.fromDegrees(sampleAngleDegrees[i]);
+      }
+    }
+    if (sample[0] != sampleYawDegrees) {
+      sampleYawDegrees = sample[0];
+      sampleYaw = yawFromDegrees(sampleYawDegrees);
+    }
+    Pose2d pose = swerveOdometry.updateWithTime(timestamp, sampleYaw, samplePositions);
+    poseHistory.add(timestamp, pose);
+    gyroHistory.add(timestamp, yawRadiansFromDegrees(sample[0]) + fieldToGyroRadians);
   }
 
   public void getPreferences() {
@@ -96,26 +236,31 @@ public class Swerve extends SubsystemBase {
         this::getChassisSpeeds, // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
         this::driveRelative, // Method that will drive the robot given ROBOT RELATIVE ChassisSpeeds
         AutoConstants.PATH_FOLLOWER_CONFIG,
-        () -> {
-          // Boolean supplier that controls when the path will be mirrored for the red
-          // alliance
-          // This will flip the path being followed to the red side of the field.
-          // THE ORIGIN WILL REMAIN ON THE BLUE SIDE
-
-          var alliance = DriverStation.getAlliance();
-          if (alliance.isPresent()) {
-            return alliance.get() == DriverStation.Alliance.Red;
-          }
-          return false;
-        },
+        Swerve::shouldFlipPath,
         this // Reference to this subsystem to set requirements
     );
   }
+
+  /**
+   * Whether paths are mirrored for the red alliance, for AutoBuilder and anything else that
+   * follows or places paths. The origin stays on the blue side.
+   */
+  public static boolean shouldFlipPath() {
+    var alliance = DriverStation.getAlliance();
+    if (alliance.isPresent()) {
+      return alliance.get() == DriverStation.Alliance.Red;
+    }
+    return false;
+  }
   public void useVisionMeasurement(Vision.VisionMeasurement measurement) {
+    Pose2d before = swerveOdometry.getEstimatedPosition();
     swerveOdometry.addVisionMeasurement(measurement.pose, measurement.timeStamp, measurement.dev);
+    // the estimator replays odometry from the measurement, the history has to follow
+    poseHistory.correct(measurement.timeStamp, before, swerveOdometry.getEstimatedPosition());
   }
   
   public void voltageDrive(Measure<Voltage> volts) {
+    fastDriveActive = false;
     for (SwerveModule mod : mSwerveMods) {
       mod.setVoltage(volts);
     }
@@ -123,9 +268,11 @@ public class Swerve extends SubsystemBase {
   }
 
   public Pose2d addVisionMeasurement(Pose2d measurement, double timeStamp) {
+    Pose2d before = swerveOdometry.getEstimatedPosition();
     swerveOdometry.addVisionMeasurement(measurement, timeStamp);
-    SmartDashboard.putNumber("vision added x", measurement.getX());
-    SmartDashboard.putNumber("vision added y", measurement.getY());
+    poseHistory.correct(timeStamp, before, swerveOdometry.getEstimatedPosition());
+    visionAddedXTelemetry.set(measurement.getX());
+    visionAddedYTelemetry.set(measurement.getY());
 
     return swerveOdometry.getEstimatedPosition();
   }
@@ -143,15 +290,62 @@ public class Swerve extends SubsystemBase {
    */
   public void drive(
       Translation2d translation, double rotation, boolean fieldRelative, boolean isOpenLoop) {
-    SwerveModuleState[] swerveModuleStates = Constants.Swerve.SWERVE_KINEMATICS.toSwerveModuleStates(
-        fieldRelative
-            ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                translation.getX(), translation.getY(), rotation, getYaw())
-            : new ChassisSpeeds(translation.getX(), translation.getY(), rotation));
-    SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.Swerve.MAX_SPEED);
+    drive(translation.getX(), translation.getY(), rotation, fieldRelative, isOpenLoop);
+  }
 
+  /**
+   * Allocation-free version of {@link #drive(Translation2d, double, boolean, boolean)}.
+   * 
+   * @param xSpeed        The desired x speed in meters per second.
+   * @param ySpeed        The desired y speed in meters per second.
+   * @param rotation      The desired rotation in radians per second.
+   * @param fieldRelative Whether the desired rotation and speed should be
+   *                      relative to the field or the robot.
+   * @param isOpenLoop    Whether the desired speed should be open loop or closed
+   *                      loop.
+   */
+  public void drive(double xSpeed, double ySpeed, double rotation, boolean fieldRelative, boolean isOpenLoop) {
+    setRequest(xSpeed, ySpeed, rotation, fieldRelative, isOpenLoop);
+    if (fieldRelative) {
+      kinematics.toModuleStatesFieldRelative(xSpeed, ySpeed, rotation, getYawRadians(), setpointStates);
+    } else {
+      kinematics.toModuleStates(xSpeed, ySpeed, rotation, setpointStates);
+    }
+    applySetpointStates(isOpenLoop);
+  }
+
+  private void setRequest(double x, double y, double rotation, boolean fieldRelative, boolean isOpenLoop) {
+    fastDriveActive = true;
+    requestTimestamp = SensorFrame.getTimestamp();
+    requestX = x;
+    requestY = y;
+    requestRotation = rotation;
+    requestFieldRelative = fieldRelative;
+    requestOpenLoop = isOpenLoop;
+  }
+
+  /* Runs in the fast loop: same request, fresher heading and module angles */
+  private void fastDrive(double timestamp) {
+    if (!fastDriveActive || timestamp - requestTimestamp > FAST_DRIVE_TIMEOUT_SECONDS) {
+      return;
+    }
+    if (requestFieldRelative) {
+      kinematics.toModuleStatesFieldRelative(requestX, requestY, requestRotation,
+          yawRadiansFromDegrees(gyro.getYaw()), setpointStates);
+    } else {
+      kinematics.toModuleStates(requestX, requestY, requestRotation, setpointStates);
+    }
+    InPlaceSwerveKinematics.desaturateWheelSpeeds(setpointStates, Constants.Swerve.MAX_SPEED);
     for (SwerveModule mod : mSwerveMods) {
-      mod.setDesiredState(swerveModuleStates[mod.moduleNumber], isOpenLoop);
+      mod.setDesiredStateLive(setpointStates[mod.moduleNumber], requestOpenLoop);
+    }
+  }
+
+  private void applySetpointStates(boolean isOpenLoop) {
+    InPlaceSwerveKinematics.desaturateWheelSpeeds(setpointStates, Constants.Swerve.MAX_SPEED);
+
+    for (SwerveModule mod : mSwerveMods) {
+      mod.setDesiredState(setpointStates[mod.moduleNumber], isOpenLoop);
     }
   }
 
@@ -171,25 +365,22 @@ public class Swerve extends SubsystemBase {
   public SwerveModuleState[] getModuleDesiredStates() {
     SwerveModuleState[] desiredStates = new SwerveModuleState[4];
     for (SwerveModule mod : mSwerveMods) {
-      desiredStates[mod.moduleNumber] = mod.getDesiredState();
+      desiredStates[mod.moduleNumber] = mod.getDesiredState().toSwerveModuleState();
     }
 
     return desiredStates;
   }
 
   public void driveRelative(ChassisSpeeds chassisSpeeds) {
-    SwerveModuleState[] swerveModuleStates = Constants.Swerve.SWERVE_KINEMATICS.toSwerveModuleStates(chassisSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.Swerve.MAX_SPEED);
-
-    for (SwerveModule mod : mSwerveMods) {
-      mod.setDesiredState(swerveModuleStates[mod.moduleNumber], false);
-    }
+    setRequest(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+        chassisSpeeds.omegaRadiansPerSecond, false, false);
+    kinematics.toModuleStates(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+        chassisSpeeds.omegaRadiansPerSecond, setpointStates);
+    applySetpointStates(false);
   }
 
   public void stop() {
-    drive(new Translation2d(0, 0).times(Constants.Swerve.MAX_SPEED),
-        0 * Constants.Swerve.MAX_ANGULAR_VELOCITY,
-        true, false);
+    drive(0, 0, 0, true, false);
   }
 
   /* Used by SwerveControllerCommand in Auto */
@@ -199,6 +390,7 @@ public class Swerve extends SubsystemBase {
    * @param desiredStates The desired states for each SwerveModule.
    */
   public void setModuleStates(SwerveModuleState[] desiredStates) {
+    fastDriveActive = false;
     SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, Constants.Swerve.MAX_SPEED);
 
     for (SwerveModule mod : mSwerveMods) {
@@ -212,6 +404,7 @@ public class Swerve extends SubsystemBase {
    * @param rotation The desired rotation.
    */
   public void setModuleRotation(Rotation2d rotation) {
+    fastDriveActive = false;
     for (SwerveModule mod : mSwerveMods) {
       mod.setDesiredState(new SwerveModuleState(0, rotation), false);
     }
@@ -219,18 +412,22 @@ public class Swerve extends SubsystemBase {
 
   /* Set individual rotation */
   public void setModule0(Rotation2d rotation) {
+    fastDriveActive = false;
     mSwerveMods[0].setDesiredState(new SwerveModuleState(0, rotation), false);
   }
 
   public void setModule1(Rotation2d rotation) {
+    fastDriveActive = false;
     mSwerveMods[1].setDesiredState(new SwerveModuleState(0, rotation), false);
   }
 
   public void setModule2(Rotation2d rotation) {
+    fastDriveActive = false;
     mSwerveMods[2].setDesiredState(new SwerveModuleState(0, rotation), false);
   }
 
   public void setModule3(Rotation2d rotation) {
+    fastDriveActive = false;
     mSwerveMods[3].setDesiredState(new SwerveModuleState(0, rotation), false);
   }
 
@@ -243,6 +440,49 @@ public class Swerve extends SubsystemBase {
     return swerveOdometry.getEstimatedPosition();
   }
 
+  /**
+   * Returns the estimated pose of the robot at a past FPGA timestamp, interpolated
+   * from the pose history. Only the last
+   * {@link Constants.Swerve#POSE_HISTORY_SECONDS} are kept; older queries return
+   * the oldest stored pose.
+   * 
+   * @param timestamp The FPGA timestamp in seconds.
+   * @return The pose at that time, or empty if no odometry has run yet.
+   */
+  public Optional<Pose2d> getPoseAt(double timestamp) {
+    return poseHistory.getPose(timestamp);
+  }
+
+  /**
+   * Returns the pose history, for callers that want allocation-free lookups with
+   * {@link PoseHistory#sample}.
+   * 
+   * @return The pose history.
+   */
+  public PoseHistory getPoseHistory() {
+    return poseHistory;
+  }
+
+  /**
+   * Returns the history of the gyro heading on its own, in field coordinates.
+   * Unlike the pose history, vision corrections don't move it; only
+   * {@link #resetOdometry} sets where it points.
+   * 
+   * @return The gyro heading history.
+   */
+  public HeadingHistory getGyroHistory() {
+    return gyroHistory;
+  }
+
+  /**
+   * Returns the drivetrain physics simulation, e.g. for its ground truth pose.
+   * 
+   * @return The simulation, or null on the robot.
+   */
+  public SwerveDriveSim getSimulation() {
+    return sim;
+  }
+
   /**
    * Returns the Field2d object.
    * 
@@ -258,6 +498,11 @@ public class Swerve extends SubsystemBase {
    * @param pose The pose to reset the odometry to.
    */
   public void resetOdometry(Pose2d pose) {
+    // samples taken before the reset would be integrated against the new pose
+    odometryThread.clear();
+    poseHistory.clear();
+    gyroHistory.clear();
+    fieldToGyroRadians = pose.getRotation().getRadians() - getYawRadians();
     swerveOdometry.resetPosition(getYaw(), getModulePositions(), pose);
   }
 
@@ -301,7 +546,11 @@ public class Swerve extends SubsystemBase {
    * Sets the yaw of the robot to 0.
    */
   public void zeroGyro() {
+    // keep the field-relative gyro heading continuous, the history and ambiguity checks rely on it
+    double fieldHeading = getYawRadians() + fieldToGyroRadians;
     gyro.zeroYaw();
+    gyroYaw = 0;
+    fieldToGyroRadians = fieldHeading - getYawRadians();
     // gyro.setYaw(0);
   }
 
@@ -311,17 +560,32 @@ public class Swerve extends SubsystemBase {
    * @return The yaw of the robot.
    */
   public Rotation2d getYaw() {
+    return yawFromDegrees(gyroYaw);
+  }
+
+  /** Allocation-free version of {@link #getYaw()}. */
+  public double getYawRadians() {
+    return yawRadiansFromDegrees(gyroYaw);
+  }
+
+  private static double yawRadiansFromDegrees(double gyroYaw) {
     return (Constants.Swerve.INVERT_GYRO)
-        ? Rotation2d.fromDegrees(360 - gyro.getYaw())
-        : Rotation2d.fromDegrees(gyro.getYaw());
+        ? Math.toRadians(360 - gyroYaw)
+        : Math.toRadians(gyroYaw);
+  }
+
+  private static Rotation2d yawFromDegrees(double gyroYaw) {
+    return (Constants.Swerve.INVERT_GYRO)
+        ? Rotation2d.fromDegrees(360 - gyroYaw)
+        : Rotation2d.fromDegrees(gyroYaw);
   }
 
   public Command sysIdQuasistatic(SysIdRoutine.Direction direction) {
-    return routine.quasistatic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(routine.quasistatic(direction));
   }
 
   public Command sysIdDynamic(SysIdRoutine.Direction direction) {
-    return routine.dynamic(direction);
+    return CanPlan.PROFILES.withSysIdProfile(routine.dynamic(direction));
   }
   public Command setAngleOffsetCommand() {
     return runOnce(()->{
@@ -332,34 +596,65 @@ public class Swerve extends SubsystemBase {
     }).ignoringDisable(true);
   }
 
-  StructArrayPublisher<SwerveModuleState> statePublisher = NetworkTableInstance.getDefault()
+  StructArrayPublisher<ModuleState> statePublisher = NetworkTableInstance.getDefault()
       .getTable("SmartDashboard/Swerve")
-      .getStructArrayTopic("States", SwerveModuleState.struct).publish();
-  StructArrayPublisher<SwerveModuleState> desiredStatePublisher = NetworkTableInstance.getDefault()
+      .getStructArrayTopic("States", ModuleState.struct).publish();
+  StructArrayPublisher<ModuleState> desiredStatePublisher = NetworkTableInstance.getDefault()
       .getTable("SmartDashboard/Swerve")
-      .getStructArrayTopic("Desired States", SwerveModuleState.struct).publish();
+      .getStructArrayTopic("Desired States", ModuleState.struct).publish();
+
+  /* Telemetry */
+  private final Telemetry.DoubleTelemetry visionAddedXTelemetry = Telemetry.number("vision added x");
+  private final Telemetry.DoubleTelemetry visionAddedYTelemetry = Telemetry.number("vision added y");
+  private final Telemetry.DoubleTelemetry sampleRateTelemetry = Telemetry.number("Swerve/Odometry/Sample Rate", 0.5, 1);
+  private final Telemetry.DoubleTelemetry jitterTelemetry = Telemetry.number("Swerve/Odometry/Jitter ms", 0.5, 0.01);
+  private final Telemetry.DoubleTelemetry droppedSamplesTelemetry = Telemetry.number("Swerve/Odometry/Dropped Samples", 0.5, 0);
+  private final Telemetry.DoubleTelemetry yawTelemetry = Telemetry.number("NavX Yaw", 0, 0.01);
+  private final Telemetry.DoubleTelemetry pitchTelemetry = Telemetry.number("NavX Pitch", 0, 0.01);
+  private final Telemetry.DoubleTelemetry rollTelemetry = Telemetry.number("NavX Roll", 0, 0.01);
+  private final Telemetry.DoubleTelemetry accelerationTelemetry = Telemetry.number("Acceleration", 0, 0.01);
+  private final Telemetry.BooleanTelemetry teleopTelemetry = Telemetry.bool("Teleop");
 
   @Override
-  public void periodic() {
+  protected void profiledPeriodic() {
+    for (SwerveModule mod : mSwerveMods) {
+      mod.readState(measuredStates[mod.moduleNumber]);
+    }
+    statePublisher.set(measuredStates);
+    desiredStatePublisher.set(desiredStates);
 
-    statePublisher.set(getModuleStates());
-    desiredStatePublisher.set(getModuleDesiredStates());
+    updateOdometry();
 
-    swerveOdometry.update(getYaw(), getModulePositions());
-    field.setRobotPose(getPose());
+    sampleRateTelemetry.set(odometryThread.getSampleRate());
+    jitterTelemetry.set(odometryThread.getJitter() * 1000);
+    droppedSamplesTelemetry.set(odometryThread.getDroppedSamples());
 
-    SmartDashboard.putNumber("NavX Yaw", gyro.getYaw());
-    SmartDashboard.putNumber("NavX Pitch", gyro.getPitch());
+    yawTelemetry.set(gyroYaw);
+    pitchTelemetry.set(gyroPitch);
 
-    SmartDashboard.putNumber("NavX Roll", gyro.getRoll());
+    rollTelemetry.set(gyroRoll);
 
-    SmartDashboard.putNumber("Acceleration", gyro.getWorldLinearAccelX());
+    accelerationTelemetry.set(gyroAccelX);
+    teleopTelemetry.set(DriverStation.isTeleopEnabled());
 
-    for (SwerveModule mod : mSwerveMods) {
-      mod.updateCache();
+  }
+
+  /* Feeds the queued samples to the estimator, the one part of periodic() that allocates */
+  private void updateOdometry() {
+    if (odometryProfile == null && LoopProfiler.isEnabled()) {
+      odometryProfile = LoopProfiler.entry(ODOMETRY_PROFILER_NAME);
+    }
+    long start = odometryProfile == null ? 0 : odometryProfile.start();
+    odometryThread.drain(odometrySampleConsumer);
+    field.setRobotPose(getPose());
+    if (odometryProfile != null) {
+      odometryProfile.stop(start);
     }
-    SmartDashboard.putBoolean("Teleop", DriverStation.isTeleopEnabled());
+  }
 
+  @Override
+  public void simulationPeriodic() {
+    sim.update();
   }
 
 }
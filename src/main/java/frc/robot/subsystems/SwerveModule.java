@@ -1,5 +1,7 @@
 package frc.robot.subsystems;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkBase.IdleMode;
@@ -17,17 +19,22 @@ import edu.wpi.first.units.Units;
 import edu.wpi.first.units.Voltage;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.RobotBase;
 import frc.lib.config.SwerveModuleConstants;
-import frc.lib.util.CANSparkMaxUtil;
-import frc.lib.util.CANSparkMaxUtil.Usage;
+import frc.lib.math.ModuleState;
+import frc.lib.util.SparkConfig;
+import frc.lib.util.SparkConfigurator;
+import frc.lib.util.SparkReferenceFilter;
+import frc.robot.CanPlan;
 import frc.robot.Constants;
 import frc.robot.Robot;
+import frc.robot.sim.SwerveModuleSim;
 
 
 public class SwerveModule implements Sendable {
   public int moduleNumber;
 
-  private Rotation2d lastAngle;
+  private double lastAngleDegrees;
   private Rotation2d angleOffset;
 
   private CANSparkMax angleMotor;
@@ -36,19 +43,31 @@ public class SwerveModule implements Sendable {
   private RelativeEncoder driveEncoder;
   private RelativeEncoder integratedAngleEncoder;
   private CANcoder angleEncoder;
+  /* Cached signals, refreshed in one batch for all modules by Swerve */
+  private final StatusSignal<Double> canCoderPosition;
+  private final StatusSignal<Double> canCoderVelocity;
 
   private final SparkPIDController driveController;
   private final SparkPIDController angleController; 
+  /* Drop control frames that repeat the last setpoint */
+  private final SparkReferenceFilter driveReference;
+  private final SparkReferenceFilter angleReference;
+
+  /* Physics model standing in for the motors and encoders, only in simulation */
+  private final SwerveModuleSim sim;
 
   private boolean isDriveEnabled = true;
   private boolean isAngleEnabled = true;
 
+  /* Sensor snapshot, filled once per loop by readSensors() */
   private double cachedCanCoderPosition =0;
   private double cachedModPosition = 0;
-  private SwerveModuleState cachedState = new SwerveModuleState();
+  private final ModuleState cachedState = new ModuleState();
+
 
+  private final ModuleState desiredState = new ModuleState();
 
-  private SwerveModuleState desiredState = new SwerveModuleState(0, new Rotation2d(0));
+  private static final double CANCODER_TIMEOUT_SECONDS = 0.1;
 
   private final SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(
     Constants.Swerve.DRIVE_KS, Constants.Swerve.DRIVE_KV, Constants.Swerve.DRIVE_KA);
@@ -59,49 +78,73 @@ public class SwerveModule implements Sendable {
 
     /* Angle Encoder Config */
     angleEncoder = new CANcoder(moduleConstants.cancoderID);
+    canCoderPosition = angleEncoder.getAbsolutePosition();
+    canCoderVelocity = angleEncoder.getVelocity();
     configAngleEncoder();
 
     /* Angle Motor Config */
     angleMotor = new CANSparkMax(moduleConstants.angleMotorID, MotorType.kBrushless);
     integratedAngleEncoder = angleMotor.getEncoder();
     angleController = angleMotor.getPIDController();
+    angleReference = new SparkReferenceFilter(angleController);
     configAngleMotor();
 
     /* Drive Motor Config */
     driveMotor = new CANSparkMax(moduleConstants.driveMotorID, MotorType.kBrushless);
     driveEncoder = driveMotor.getEncoder();
     driveController = driveMotor.getPIDController();
-    driveMotor.setInverted(moduleConstants.driverInvert);
+    driveReference = new SparkReferenceFilter(driveController);
 
     // driveEncoder.setPositionConversionFactor(moduleConstants.conversionFactor)
-    configDriveMotor();
-
-    lastAngle = getState().angle;
+    configDriveMotor(moduleConstants.driverInvert);
 
+    sim = RobotBase.isSimulation()
+        ? new SwerveModuleSim(driveReference, angleReference, angleEncoder, angleOffset.getDegrees())
+        : null;
   }
 
   public void setDesiredState(SwerveModuleState desiredState, boolean isOpenLoop) {
-    desiredState = SwerveModuleState.optimize(desiredState, getState().angle);
-    this.desiredState = desiredState;
-    // Custom optimize command, since default WPILib optimize assumes
-    // continuous controller which REV and CTRE are not
+    this.desiredState.set(desiredState);
+    applyDesiredState(isOpenLoop, cachedState.angle.getDegrees());
+  }
+
+  /** Allocation-free version of {@link #setDesiredState(SwerveModuleState, boolean)}. */
+  public void setDesiredState(ModuleState desiredState, boolean isOpenLoop) {
+    this.desiredState.speedMetersPerSecond = desiredState.speedMetersPerSecond;
+    this.desiredState.angle.set(desiredState.angle);
+    applyDesiredState(isOpenLoop, cachedState.angle.getDegrees());
+  }
+
+  /**
+   * Like {@link #setDesiredState(ModuleState, boolean)}, but optimized against the live angle
+   * instead of the loop's snapshot. For the fast loop, which runs between snapshots.
+   */
+  public void setDesiredStateLive(ModuleState desiredState, boolean isOpenLoop) {
+    this.desiredState.speedMetersPerSecond = desiredState.speedMetersPerSecond;
+    this.desiredState.angle.set(desiredState.angle);
+    applyDesiredState(isOpenLoop, getAngleDegrees());
+  }
 
+  private void applyDesiredState(boolean isOpenLoop, double currentAngleDegrees) {
+    // WPILib style (continuous) optimize, the angle controller has position wrapping enabled
+    desiredState.optimize(currentAngleDegrees);
 
     setAngle(desiredState);
     setSpeed(desiredState, isOpenLoop);
   }
 
 
-  private void setSpeed(SwerveModuleState desiredState, boolean isOpenLoop) {
+  private void setSpeed(ModuleState desiredState, boolean isOpenLoop) {
+    // duty cycle setpoints go through the filter too, same frame as driveMotor.set()
     if (!isDriveEnabled) {
-      driveMotor.set(0);
+      driveReference.setReference(0, ControlType.kDutyCycle);
       return;
     }
     if (isOpenLoop) {
       double percentOutput = desiredState.speedMetersPerSecond / Constants.Swerve.MAX_SPEED;
-      driveMotor.set(percentOutput);
+      driveReference.setReference(percentOutput, ControlType.kDutyCycle);
     } else {
-      driveController.setReference(
+      driveReference.setReference(
           desiredState.speedMetersPerSecond,
           ControlType.kVelocity,
           0,
@@ -109,26 +152,29 @@ public class SwerveModule implements Sendable {
     }
   }
   public void setVoltage(Measure<Voltage> volts) {
-    driveMotor.setVoltage(volts.in(Units.Volts));
+    // the Spark's voltage control rather than setVoltage(), so the setpoint goes through the filter
+    driveReference.setReference(volts.in(Units.Volts), ControlType.kVoltage);
   }
 
-  private void setAngle(SwerveModuleState desiredState) {
+  private void setAngle(ModuleState desiredState) {
     if (!isAngleEnabled) {
-      angleMotor.set(0);
+      angleReference.setReference(0, ControlType.kDutyCycle);
       return;
     }
     // Prevent rotating module if speed is less then 1%. Prevents jittering.
-    Rotation2d angle = (Math.abs(desiredState.speedMetersPerSecond) <= (Constants.Swerve.MAX_SPEED * 0.01))
-        ? lastAngle
-        : desiredState.angle;
+    double angle = (Math.abs(desiredState.speedMetersPerSecond) <= (Constants.Swerve.MAX_SPEED * 0.01))
+        ? lastAngleDegrees
+        : desiredState.angle.getDegrees();
 
-    angleController.setReference(angle.getDegrees(), ControlType.kPosition);
-    lastAngle = angle;
+    angleReference.setReference(angle, ControlType.kPosition);
+    lastAngleDegrees = angle;
   }
 
   public void resetToAbsolute() {
     // System.out.println("resetAbsolute \n \n \n \n reset to absolute");
     
+    // not called every loop, so wait for a fresh reading instead of relying on the batched refresh
+    BaseStatusSignal.waitForAll(CANCODER_TIMEOUT_SECONDS, canCoderPosition, canCoderVelocity);
     double absolutePosition = getCanCoder().getDegrees() - angleOffset.getDegrees();
     integratedAngleEncoder.setPosition(absolutePosition);
   }
@@ -137,101 +183,47 @@ public class SwerveModule implements Sendable {
     //angleEncoder.configFactoryDefault();
     // CANCoderUtil.setCANCoderBusUsage(angleEncoder, CCUsage.kMinimal);
     angleEncoder.getConfigurator().apply(Robot.ctreConfigs.swerveCanCoderConfig);
+    CanPlan.PROFILES.register(angleEncoder);
   }
 
   private void configAngleMotor() {
-    angleMotor.restoreFactoryDefaults();
-    CANSparkMaxUtil.setCANSparkMaxBusUsage(angleMotor, Usage.kPositionOnly);
-    angleMotor.setSmartCurrentLimit(Constants.Swerve.ANGLE_CONTINUOUS_CURRENT_LIMIT);
-    angleMotor.setInverted(Constants.Swerve.ANGLE_INVERT);
-    angleMotor.setIdleMode(Constants.Swerve.ANGLE_NEUTRAL_MODE);
-    integratedAngleEncoder.setPositionConversionFactor(Constants.Swerve.ANGLE_CONVERSION_FACTOR);
-    angleController.setPositionPIDWrappingEnabled(true);
-    angleController.setPositionPIDWrappingMinInput(-180.0);
-    angleController.setPositionPIDWrappingMaxInput(180.0);
-    angleMotor.enableVoltageCompensation(Constants.Swerve.VOLTAGE_COMP);
-    burnAngleFlash(1);
-
-    // TODO: fix me
-    // try {
-    // Thread.sleep(200l);
-    // } catch (InterruptedException e) {
-    //   throw new RuntimeException();
-    // }
-    // angleMotor.burnFlash();
-
-    
-    resetToAbsolute();
+    SparkConfigurator.submit("Mod " + moduleNumber + " angle", angleMotor, new SparkConfig()
+        .smartCurrentLimit(Constants.Swerve.ANGLE_CONTINUOUS_CURRENT_LIMIT)
+        .inverted(Constants.Swerve.ANGLE_INVERT)
+        .idleMode(Constants.Swerve.ANGLE_NEUTRAL_MODE)
+        .positionConversionFactor(Constants.Swerve.ANGLE_CONVERSION_FACTOR)
+        .positionWrapping(-180.0, 180.0)
+        .voltageCompensation(Constants.Swerve.VOLTAGE_COMP)
+        .pid(Constants.Swerve.ANGLE_KP, Constants.Swerve.ANGLE_KI, Constants.Swerve.ANGLE_KD, Constants.Swerve.ANGLE_KFF)
+        .always(CanPlan.PROFILES::register));
   }
 
-  private void configDriveMotor() {
-    driveMotor.restoreFactoryDefaults();
-    CANSparkMaxUtil.setCANSparkMaxBusUsage(driveMotor, Usage.kVelocityOnly);
-    driveMotor.setSmartCurrentLimit(Constants.Swerve.DRIVE_CONTINUOUS_CURRENT_LIMIT);
-    driveMotor.setIdleMode(Constants.Swerve.DRIVE_NEUTRAL_MODE);
-    driveEncoder.setPositionConversionFactor(0.060509807);
-    driveEncoder.setVelocityConversionFactor(Constants.Swerve.DRIVE_CONVERSION_VELOCITY_FACTOR);
-    // driveController.setP(Constants.Swerve.ANGLE_KP);
-    // driveController.setI(Constants.Swerve.ANGLE_KI);
-    // driveController.setD(Constants.Swerve.ANGLE_KD);
-    // driveController.setFF(Constants.Swerve.ANGLE_KFF);
-    driveMotor.enableVoltageCompensation(Constants.Swerve.VOLTAGE_COMP);
-    driveEncoder.setPosition(0.0);
-    burnDriveFlash(1);
-
-    // driveMotor.setInverted(Constants.Swerve.DRIVE_INVERT);
+  private void configDriveMotor(boolean invert) {
+    SparkConfigurator.submit("Mod " + moduleNumber + " drive", driveMotor, new SparkConfig()
+        .inverted(invert)
+        .smartCurrentLimit(Constants.Swerve.DRIVE_CONTINUOUS_CURRENT_LIMIT)
+        .idleMode(Constants.Swerve.DRIVE_NEUTRAL_MODE)
+        .positionConversionFactor(0.060509807)
+        .velocityConversionFactor(Constants.Swerve.DRIVE_CONVERSION_VELOCITY_FACTOR)
+        .voltageCompensation(Constants.Swerve.VOLTAGE_COMP)
+        .pid(Constants.Swerve.DRIVE_KP, Constants.Swerve.DRIVE_KI, Constants.Swerve.DRIVE_KD, Constants.Swerve.DRIVE_KFF)
+        .always(motor -> {
+          CanPlan.PROFILES.register(motor);
+          motor.getEncoder().setPosition(0.0);
+        }));
   }
 
-  private boolean burnDriveFlash(int attempt) {
-    driveController.setP(Constants.Swerve.DRIVE_KP);
-    driveController.setI(Constants.Swerve.DRIVE_KI);
-    driveController.setD(Constants.Swerve.DRIVE_KD);
-    driveController.setFF(Constants.Swerve.DRIVE_KFF);
-    try {
-      Thread.sleep(300);
-      driveMotor.burnFlash();
-      Thread.sleep(300);
-    } catch (Exception e) {
-      return false;
-    }
-    if (
-          driveController.getP()==Constants.Swerve.DRIVE_KP
-        &&driveController.getI()==Constants.Swerve.DRIVE_KI
-        &&driveController.getD()==Constants.Swerve.DRIVE_KD
-        &&driveController.getFF()==Constants.Swerve.DRIVE_KFF
-        ) {
-      return true;
-    } else {  
-      if (attempt >= 5) return false;
-      return burnDriveFlash(attempt+1);
-    }
-  }
-  private boolean burnAngleFlash(int attempt) {
-    angleController.setP(Constants.Swerve.ANGLE_KP);
-    angleController.setI(Constants.Swerve.ANGLE_KI);
-    angleController.setD(Constants.Swerve.ANGLE_KD);
-    angleController.setFF(Constants.Swerve.ANGLE_KFF);
-    try {
-      Thread.sleep(300);
-      driveMotor.burnFlash();
-      Thread.sleep(300);
-    } catch (Exception e) {
-      return false;
-    }
-    if (
-          angleController.getP()==Constants.Swerve.ANGLE_KP
-        &&angleController.getI()==Constants.Swerve.ANGLE_KI
-        &&angleController.getD()==Constants.Swerve.ANGLE_KD
-        &&angleController.getFF()==Constants.Swerve.ANGLE_KFF
-        ) {
-      return true;
-    } else {  
-      if (attempt >= 5) return false;
-      return burnAngleFlash(attempt+1);
-    }
+  /**
+   * Call once the motors are configured (see {@link SparkConfigurator#awaitAll()}): seeds the
+   * angle encoder from the CANcoder and takes the first sensor snapshot.
+   */
+  public void finishConfiguration() {
+    resetToAbsolute();
+    lastAngleDegrees = getAngleDegrees();
+    readSensors();
   }
 
-  public SwerveModuleState getDesiredState() {
+  public ModuleState getDesiredState() {
     return desiredState;
   }
   public void setAngleOffset(double degree) {
@@ -242,25 +234,59 @@ public class SwerveModule implements Sendable {
   }
 
   public Rotation2d getCanCoder() {
-    return Rotation2d.fromRotations(angleEncoder.getAbsolutePosition().getValue());
+    return Rotation2d.fromRotations(getAbsolutePosition());
     //return Rotation2d.fromDegrees(angleEncoder.getAbsolutePosition());
   }
+
+  /**
+   * Absolute position in rotations as of the last signal refresh, latency
+   * compensated with the CANcoder velocity. Does not touch the CAN bus.
+   */
   public double getAbsolutePosition() {
-    return angleEncoder.getAbsolutePosition().getValue();
+    return BaseStatusSignal.getLatencyCompensatedValue(canCoderPosition, canCoderVelocity);
   }
 
-  private Rotation2d getAngle() {
-    return Rotation2d.fromDegrees(integratedAngleEncoder.getPosition());
+  /** Device timestamp of the last absolute position reading, in seconds. */
+  public double getAbsolutePositionTimestamp() {
+    return canCoderPosition.getTimestamp().getTime();
   }
 
+  /** Signals to include in the batched per-loop refresh. */
+  public BaseStatusSignal[] getCanCoderSignals() {
+    return new BaseStatusSignal[] {canCoderPosition, canCoderVelocity};
+  }
+
+  /** State as of the current sensor snapshot. */
   public SwerveModuleState getState() {
-    double velocity = driveEncoder.getVelocity();
-    return new SwerveModuleState(velocity, getAngle());
+    return cachedState.toSwerveModuleState();
+  }
+
+  /** Allocation-free version of {@link #getState()}. */
+  public void readState(ModuleState out) {
+    out.speedMetersPerSecond = cachedState.speedMetersPerSecond;
+    out.angle.set(cachedState.angle);
   }
 
+  /** Position as of the current sensor snapshot. */
   public SwerveModulePosition getPosition() {
-    double position = driveEncoder.getPosition();
-    return new SwerveModulePosition(position, getAngle());
+    return new SwerveModulePosition(cachedModPosition, cachedState.angle.toRotation2d());
+  }
+
+  /*
+   * Live primitive accessors that bypass the snapshot, for the odometry thread
+   * which samples between loops
+   */
+  public double getDriveDistance() {
+    return sim != null ? sim.getDrivePositionMeters() : driveEncoder.getPosition();
+  }
+
+  public double getAngleDegrees() {
+    return sim != null ? sim.getAngleDegrees() : integratedAngleEncoder.getPosition();
+  }
+
+  /** @return the physics model, or null on the robot */
+  public SwerveModuleSim getSimulation() {
+    return sim;
   }
 
   @Override
@@ -273,11 +299,20 @@ public class SwerveModule implements Sendable {
     builder.addDoubleProperty("Stats/Position", ()->cachedModPosition, null);
     builder.addDoubleProperty("Stats/Setpoint Angle", ()->desiredState.angle.getDegrees(), null);
     builder.addDoubleProperty("Stats/Setpoint Velocity", ()->desiredState.speedMetersPerSecond, null);
+    builder.addDoubleProperty("CAN/Drive Frames Sent", ()->driveReference.getFramesSent(), null);
+    builder.addDoubleProperty("CAN/Drive Frames Suppressed", ()->driveReference.getFramesSuppressed(), null);
+    builder.addDoubleProperty("CAN/Angle Frames Sent", ()->angleReference.getFramesSent(), null);
+    builder.addDoubleProperty("CAN/Angle Frames Suppressed", ()->angleReference.getFramesSuppressed(), null);
   }
-  public void updateCache() {
-    cachedCanCoderPosition = getCanCoder().getDegrees();
-    cachedModPosition = this.getPosition().distanceMeters;
-    cachedState = getState();
+  /**
+   * Copies this module's sensors into the snapshot. Called by Swerve once per
+   * loop, after the CANcoder signals have been refreshed.
+   */
+  public void readSensors() {
+    cachedCanCoderPosition = getAbsolutePosition() * 360;
+    cachedModPosition = getDriveDistance();
+    cachedState.speedMetersPerSecond = sim != null ? sim.getDriveVelocity() : driveEncoder.getVelocity();
+    cachedState.angle.setDegrees(getAngleDegrees());
   }
   public void setAngleEnabled(boolean enabled) {
     if (isAngleEnabled!=enabled) {
@@ -6,14 +6,16 @@ package frc.robot.subsystems;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.photonvision.EstimatedRobotPose;
-import org.photonvision.PhotonCamera;
-import org.photonvision.PhotonPoseEstimator;
-import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -26,53 +28,125 @@ import edu.wpi.first.networktables.StructArrayPublisher;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.ProfiledSubsystem;
+import frc.lib.SensorFrame;
+import frc.lib.Telemetry;
+import frc.lib.math.HeadingHistory;
+import frc.lib.math.PoseHistory;
+import frc.lib.util.AprilTagIndex;
 import frc.robot.Constants;
 import frc.robot.Constants.VisionConstants;
+import frc.robot.sim.VisionSim;
 
-public class Vision extends SubsystemBase {
-  private PhotonCamera frontCamera;
-  private PhotonCamera backCamera;
-
-  private PhotonPoseEstimator frontEstimator;
-  private PhotonPoseEstimator backEstimator;
+/*
+Camera results are fetched and turned into pose estimates on a small worker pool shared by every camera in VisionConstants.CAMERAS (see VisionCamera). The main loop only drains each camera's queue, gates and fuses the measurements (see VisionFusion), hands them to the consumer (Swerve) and publishes telemetry.
+*/
+public class Vision extends ProfiledSubsystem {
+  private final CameraChannel[] cameras;
+  private final ScheduledExecutorService workers;
 
   private AprilTagFieldLayout fieldLayout;
+  private AprilTagIndex tagIndex;
   private double poseTimestamp;
   private Pose2d visionPose = new Pose2d(0.0, 0.0, new Rotation2d(0.0));
   private Field2d field2d;
   private Pose2d referencePose = new Pose2d(0.0, 0.0, new Rotation2d(0.0));
-  private Consumer<VisionMeasurement> consumer;
+  private VisionFusion fusion;
   private Supplier<Pose2d> poseSupplier;
+  private VisionSim sim;
   public static class VisionMeasurement {
     public Pose2d pose;
     public double timeStamp;
     Matrix<N3, N1> dev;
+    /* IDs of the tags used as an AprilTagIndex mask, for dashboard visualisation */
+    long tagMask;
     public VisionMeasurement (Pose2d pose,double timeStamp,Matrix<N3, N1> dev) {
+      this(pose, timeStamp, dev, 0);
+    }
+    public VisionMeasurement (Pose2d pose,double timeStamp,Matrix<N3, N1> dev,long tagMask) {
       this.pose = pose;
       this.dev = dev;
       this.timeStamp = timeStamp;
+      this.tagMask = tagMask;
     }
   }
-  public Vision(Consumer<VisionMeasurement> consumer,Supplier<Pose2d> poseSupplier) {
+  public Vision(Consumer<VisionMeasurement> consumer,Supplier<Pose2d> poseSupplier,PoseHistory poseHistory,
+      HeadingHistory gyroHistory) {
     this.poseSupplier = poseSupplier;
-    this.consumer = consumer;
-    frontCamera = new PhotonCamera(VisionConstants.FRONT_CAMERA_NAME);
-    backCamera = new PhotonCamera(VisionConstants.BACK_CAMERA_NAME);
+    this.fusion = new VisionFusion(poseHistory, consumer);
 
     try {
       fieldLayout = AprilTagFieldLayout.loadFromResource(VisionConstants.FIELD_LAYOUT_RESOURCE_FILE);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
-    frontEstimator = new PhotonPoseEstimator(fieldLayout, PoseStrategy.CLOSEST_TO_REFERENCE_POSE, frontCamera,
-        VisionConstants.ROBOT_TO_FRONT_CAM);
-    backEstimator = new PhotonPoseEstimator(fieldLayout, PoseStrategy.CLOSEST_TO_REFERENCE_POSE, backCamera,
-        VisionConstants.ROBOT_TO_BACK_CAM);
+    tagIndex = new AprilTagIndex(fieldLayout);
+    cameras = new CameraChannel[VisionConstants.CAMERAS.length];
+    for (int i = 0; i < cameras.length; i++) {
+      cameras[i] = new CameraChannel(new VisionCamera(VisionConstants.CAMERAS[i], fieldLayout, tagIndex, gyroHistory));
+    }
     field2d = new Field2d();
     SmartDashboard.putData("Vision estimated Pose",field2d);
     
     poseTimestamp = Timer.getFPGATimestamp();
+    SensorFrame.register(this::readSensors);
+
+    AtomicInteger workerCount = new AtomicInteger();
+    workers = Executors.newScheduledThreadPool(VisionConstants.WORKER_THREADS, runnable -> {
+      Thread thread = new Thread(runnable, "Vision-" + workerCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (CameraChannel channel : cameras) {
+      channel.camera.start(workers);
+    }
+  }
+
+  /**
+   * Replaces the coprocessors with simulated cameras that see the field from {@code groundTruth}.
+   * Only call in simulation.
+   */
+  public void enableSimulation(Supplier<Pose2d> groundTruth) {
+    sim = new VisionSim(fieldLayout, groundTruth);
+    for (CameraChannel channel : cameras) {
+      sim.addCamera(channel.camera.getCamera(), channel.camera.getRobotToCamera());
+    }
+  }
+
+  /** The simulated cameras, or null if {@link #enableSimulation} hasn't been called. */
+  public VisionSim getSimulation() {
+    return sim;
+  }
+
+  /** Frames processed by all the cameras so far. */
+  public long getFramesIngested() {
+    long frames = 0;
+    for (CameraChannel channel : cameras) {
+      frames += channel.camera.getFramesIngested();
+    }
+    return frames;
+  }
+
+  /** Worker time all the cameras have spent on frames so far, see {@link VisionCamera#getProcessNanos()}. */
+  public long getProcessNanos() {
+    long nanos = 0;
+    for (CameraChannel channel : cameras) {
+      nanos += channel.camera.getProcessNanos();
+    }
+    return nanos;
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    if (sim != null) {
+      sim.update();
+    }
+  }
+
+  private void readSensors() {
+    for (int i = 0; i < cameras.length; i++) {
+      cameras[i].connected = cameras[i].camera.isConnected();
+    }
   }
   
   public Pose2d getVisionPose() {
@@ -88,56 +162,134 @@ public class Vision extends SubsystemBase {
   public void setReferencePose(Pose2d referencePose) {
     this.referencePose = referencePose;
   } 
-  StructArrayPublisher<Pose3d> frontTags = NetworkTableInstance.getDefault()
-    .getStructArrayTopic("SmartDashboard/Vision/Front Tags", Pose3d.struct).publish();
-  StructArrayPublisher<Pose3d> backTags = NetworkTableInstance.getDefault()
-    .getStructArrayTopic("SmartDashboard/Vision/Back Tags", Pose3d.struct).publish();
+  private final Telemetry.DoubleTelemetry estimatedAngleTelemetry = Telemetry.number("Vision/Estimated Angle", 0, 0.01);
+  private final Telemetry.DoubleTelemetry acceptedTelemetry = Telemetry.number("Vision/Fusion/Accepted", 0.5, 0);
+  private final Telemetry.DoubleTelemetry rejectedTelemetry = Telemetry.number("Vision/Fusion/Rejected", 0.5, 0);
+  private final Telemetry.DoubleTelemetry reseedsTelemetry = Telemetry.number("Vision/Fusion/Reseeds", 0.5, 0);
+  private final Telemetry.DoubleTelemetry insertionsTelemetry = Telemetry.number("Vision/Fusion/Insertions Per Loop");
+  private final Telemetry.DoubleTelemetry distanceTelemetry = Telemetry.number("Vision/Fusion/Mahalanobis Distance", 0, 0.01);
+
+  /* Measurements drained this loop from all cameras, fused in timestamp order */
+  private final List<VisionMeasurement> pending = new ArrayList<>();
+  private static final Comparator<VisionMeasurement> BY_TIMESTAMP =
+      Comparator.comparingDouble(measurement -> measurement.timeStamp);
+
+  /* One camera with its main loop state: connection snapshot, tag publisher and metrics */
+  private static class CameraChannel {
+    final VisionCamera camera;
+    final StructArrayPublisher<Pose3d> tags;
+    final Telemetry.BooleanTelemetry connectedTelemetry;
+    final Telemetry.BooleanTelemetry healthy;
+    final Telemetry.DoubleTelemetry queueDepth;
+    final Telemetry.DoubleTelemetry dropped;
+    final Telemetry.DoubleTelemetry latency;
+    final Telemetry.DoubleTelemetry processTime;
+    final Telemetry.DoubleTelemetry framesPerSecond;
+    final Telemetry.DoubleTelemetry ambiguityResolved;
+    final Telemetry.DoubleTelemetry ambiguityFlipped;
+    final Telemetry.DoubleTelemetry ambiguityRejected;
+    boolean connected;
+    long publishedTagMask = -1;
+    long lastFrameCount = 0;
+    double lastFrameCountTime = 0;
+    CameraChannel(VisionCamera camera) {
+      this.camera = camera;
+      // tags and connected keep the keys they had when the cameras were hard-coded
+      String name = camera.getDashboardName();
+      String prefix = "Vision/" + name + "/";
+      tags = NetworkTableInstance.getDefault()
+        .getStructArrayTopic("SmartDashboard/Vision/" + name + " Tags", Pose3d.struct).publish();
+      connectedTelemetry = Telemetry.bool("Vision/" + name + " Camera Connected");
+      healthy = Telemetry.bool(prefix + "Healthy");
+      queueDepth = Telemetry.number(prefix + "Queue Depth");
+      dropped = Telemetry.number(prefix + "Dropped Measurements", 0.5, 0);
+      latency = Telemetry.number(prefix + "Latency ms", 0, 0.1);
+      processTime = Telemetry.number(prefix + "Process ms", 0.1, 0.1);
+      framesPerSecond = Telemetry.number(prefix + "Frames Per Second");
+      ambiguityResolved = Telemetry.number(prefix + "Ambiguity/Resolved", 0.5, 0);
+      ambiguityFlipped = Telemetry.number(prefix + "Ambiguity/Flipped", 0.5, 0);
+      ambiguityRejected = Telemetry.number(prefix + "Ambiguity/Rejected", 0.5, 0);
+    }
+    void updateFrameRate(long frameCount, double now) {
+      if (now - lastFrameCountTime >= 1.0) {
+        framesPerSecond.set((frameCount - lastFrameCount) / (now - lastFrameCountTime));
+        lastFrameCount = frameCount;
+        lastFrameCountTime = now;
+      }
+    }
+    /* the tag array only goes out when the set of tags changes */
+    void publishTags(AprilTagIndex tagIndex, long tagMask) {
+      if (tagMask != publishedTagMask) {
+        tags.set(tagIndex.toPoses(tagMask));
+        publishedTagMask = tagMask;
+      }
+    }
+  }
+
   @Override
-  public void periodic() {
-    /* update estimated pose */
+  protected void profiledPeriodic() {
+    /* update reference pose for the camera workers */
     referencePose = poseSupplier.get();
-    frontEstimator.setReferencePose(referencePose);
-    backEstimator.setReferencePose(referencePose);
-
-    Optional<EstimatedRobotPose> frontEstimate = frontEstimator.update();
-    Optional<EstimatedRobotPose> backEstimate  = backEstimator.update();
-
-    if (frontEstimate.isPresent()) {
-      consumer.accept(new VisionMeasurement(frontEstimate.get().estimatedPose.toPose2d(), frontEstimate.get().timestampSeconds, confidenceCalculator(frontEstimate.get())));
-      //good old java
-       frontTags.set(
-          frontEstimate.get().targetsUsed.stream()
-          .map((i)-> fieldLayout.getTagPose(i.getFiducialId()).get())
-          .toArray(size -> new Pose3d[size])
-          );
-      
-    } else {
-      frontTags.set(new Pose3d[0]);
-    }
-    if (backEstimate.isPresent()) {
-      consumer.accept(new VisionMeasurement(backEstimate.get().estimatedPose.toPose2d(), backEstimate.get().timestampSeconds, confidenceCalculator(backEstimate.get())));
-      //good old java
-       backTags.set(
-          backEstimate.get().targetsUsed.stream()
-          .map((i)-> fieldLayout.getTagPose(i.getFiducialId()).get())
-          .toArray(size -> new Pose3d[size])
-          );
-      
-    } else {
-      backTags.set(new Pose3d[0]);
+    for (int i = 0; i < cameras.length; i++) {
+      cameras[i].camera.setReferencePose(referencePose);
+      drain(cameras[i]);
     }
-    
-    SmartDashboard.putBoolean("Vision/Front Camera Connected", frontCamera.isConnected());
-    SmartDashboard.putBoolean("Vision/Back Camera Connected", backCamera.isConnected());
-    if (!frontCamera.isConnected()) frontTags.set(new Pose3d[0]);
-    if (!backCamera.isConnected()) backTags.set(new Pose3d[0]);
+    pending.sort(BY_TIMESTAMP);
+    fusion.update(pending);
+    pending.clear();
+    acceptedTelemetry.set(fusion.getAccepted());
+    rejectedTelemetry.set(fusion.getRejected());
+    reseedsTelemetry.set(fusion.getReseeds());
+    insertionsTelemetry.set(fusion.getInsertionsLastUpdate());
+    distanceTelemetry.set(fusion.getLastDistance());
+
     field2d.setRobotPose(this.visionPose);
     
-    SmartDashboard.putNumber("Vision/Estimated Angle",getVisionPose().getRotation().getDegrees());
+    estimatedAngleTelemetry.set(getVisionPose().getRotation().getDegrees());
 
 
   }
-   private Matrix<N3, N1> confidenceCalculator(EstimatedRobotPose estimation) {
+
+  /* Moves every queued measurement from a camera into pending and updates its metrics */
+  private void drain(CameraChannel channel) {
+    VisionCamera camera = channel.camera;
+    double now = SensorFrame.getTimestamp();
+    channel.connectedTelemetry.set(channel.connected);
+    channel.healthy.set(channel.connected
+        && now - camera.getLastFrameTime() < VisionConstants.CAMERA_STALE_SECONDS);
+    channel.queueDepth.set(camera.getQueueDepth());
+    channel.dropped.set(camera.getDroppedMeasurements());
+    channel.processTime.set(camera.getProcessMillis());
+    channel.updateFrameRate(camera.getFramesIngested(), now);
+    channel.ambiguityResolved.set(camera.getAmbiguityResolver().getResolved());
+    channel.ambiguityFlipped.set(camera.getAmbiguityResolver().getFlipped());
+    channel.ambiguityRejected.set(camera.getAmbiguityResolver().getRejected());
+
+    VisionMeasurement latest = null;
+    VisionMeasurement measurement;
+    while ((measurement = camera.poll()) != null) {
+      pending.add(measurement);
+      latest = measurement;
+      if (sim != null) {
+        sim.score(measurement.pose, measurement.timeStamp);
+      }
+    }
+    if (latest == null) {
+      channel.publishTags(tagIndex, 0);
+      return;
+    }
+    visionPose = latest.pose;
+    poseTimestamp = latest.timeStamp;
+    // capture to main loop, including camera pipeline, network and queueing
+    channel.latency.set((Timer.getFPGATimestamp() - latest.timeStamp) * 1000);
+    channel.publishTags(tagIndex, latest.tagMask);
+  }
+  /**
+   * Scales the vision standard deviations by distance to the closest tag, single
+   * tag ambiguity and number of tags. Static and hardware free so it can be
+   * benchmarked off robot.
+   */
+  public static Matrix<N3, N1> confidenceCalculator(EstimatedRobotPose estimation) {
     double smallestDistance = Double.POSITIVE_INFINITY;
     for (var target : estimation.targetsUsed) {
       var t3d = target.getBestCameraToTarget();
@@ -0,0 +1,210 @@
+package frc.robot.subsystems;
+
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonCamera;
+import org.photonvision.PhotonPoseEstimator;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.RawSubscriber;
+import edu.wpi.first.networktables.TimestampedRaw;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import frc.lib.SpscQueue;
+import frc.lib.config.VisionCameraConstants;
+import frc.lib.math.HeadingHistory;
+import frc.lib.util.AprilTagIndex;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * One PhotonVision camera and its pose estimator. {@link #start} schedules the camera on a worker
+ * pool shared by all cameras; new pipeline results are turned into {@link Vision.VisionMeasurement}s
+ * off the main loop and handed over through a lock-free queue that {@link Vision} drains every
+ * loop. A camera is never processed by two workers at once, so the queue keeps a single producer.
+ *
+ * <p>With {@link VisionConstants#INGEST_ALL_FRAMES} every frame published since the last poll is
+ * processed, read from our own queued subscriber to the camera's rawBytes topic. Otherwise only
+ * the latest result is used, like {@link PhotonCamera#getLatestResult()}.
+ */
+public class VisionCamera implements AutoCloseable {
+  private final VisionCameraConstants constants;
+  private final PhotonCamera camera;
+  private final PhotonPoseEstimator estimator;
+  private final AprilTagIndex tagIndex;
+  private final AmbiguityResolver ambiguityResolver;
+  private final SpscQueue<Vision.VisionMeasurement> queue =
+      new SpscQueue<>(VisionConstants.MEASUREMENT_QUEUE_CAPACITY);
+  private final RawSubscriber frameSubscriber;
+  private ScheduledFuture<?> task;
+
+  /* written by the main loop, read by the worker */
+  private volatile Pose2d referencePose = new Pose2d();
+
+  /* only touched by the worker */
+  private double lastResultTimestamp = -1;
+
+  /* written by the worker, read by the main loop */
+  private volatile long framesIngested = 0;
+  private volatile double lastFrameTime = Double.NEGATIVE_INFINITY;
+  private volatile double processMillis = 0;
+  private volatile long processNanos = 0;
+
+  public VisionCamera(VisionCameraConstants constants, AprilTagFieldLayout fieldLayout, AprilTagIndex tagIndex,
+      HeadingHistory gyroHistory) {
+    this.constants = constants;
+    this.tagIndex = tagIndex;
+    ambiguityResolver = new AmbiguityResolver(constants.robotToCamera, tagIndex, gyroHistory);
+    camera = new PhotonCamera(constants.name);
+    estimator = new PhotonPoseEstimator(fieldLayout, constants.strategy, camera, constants.robotToCamera);
+    estimator.setMultiTagFallbackStrategy(PoseStrategy.CLOSEST_TO_REFERENCE_POSE);
+    // same topic PhotonCamera reads, but keeping every value since the last readQueue()
+    frameSubscriber = NetworkTableInstance.getDefault().getTable("photonvision").getSubTable(constants.name)
+        .getRawTopic("rawBytes").subscribe("rawBytes", new byte[] {},
+            PubSubOption.sendAll(true), PubSubOption.pollStorage(VisionConstants.FRAME_QUEUE_DEPTH));
+  }
+
+  public void start(ScheduledExecutorService workers) {
+    task = workers.scheduleWithFixedDelay(this::update, 0, VisionConstants.CAMERA_POLL_PERIOD_MS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void update() {
+    try {
+      if (VisionConstants.INGEST_ALL_FRAMES) {
+        // oldest first, process() drops duplicate and out of order timestamps
+        for (TimestampedRaw frame : frameSubscriber.readQueue()) {
+          long start = System.nanoTime();
+          process(decode(frame));
+          processNanos += System.nanoTime() - start;
+        }
+      } else {
+        long start = System.nanoTime();
+        process(camera.getLatestResult());
+        processNanos += System.nanoTime() - start;
+      }
+    } catch (RuntimeException e) {
+      // an exception would cancel the scheduled task, a bad frame shouldn't kill vision for the match
+      DriverStation.reportError("Vision " + constants.name + ": " + e.getMessage(), e.getStackTrace());
+    }
+  }
+
+  /* Same decoding as PhotonCamera.getLatestResult(), for a queued frame */
+  private static PhotonPipelineResult decode(TimestampedRaw frame) {
+    PhotonPipelineResult result = PhotonPipelineResult.serde.unpack(new Packet(frame.value));
+    result.setTimestampSeconds(frame.timestamp / 1e6 - result.getLatencyMillis() / 1e3);
+    return result;
+  }
+
+  private void process(PhotonPipelineResult result) {
+    double timestamp = result.getTimestampSeconds();
+    if (timestamp <= lastResultTimestamp) {
+      return;
+    }
+    double start = Timer.getFPGATimestamp();
+    lastResultTimestamp = timestamp;
+    framesIngested = framesIngested + 1;
+    lastFrameTime = start;
+
+    result = ambiguityResolver.resolve(result);
+    if (result == null) {
+      processMillis = (Timer.getFPGATimestamp() - start) * 1000;
+      return;
+    }
+    estimator.setReferencePose(referencePose);
+    Optional<EstimatedRobotPose> estimate = estimator.update(result);
+    if (estimate.isPresent()) {
+      EstimatedRobotPose estimation = estimate.get();
+      long tagMask = 0;
+      for (int i = 0; i < estimation.targetsUsed.size(); i++) {
+        tagMask = tagIndex.addToMask(tagMask, estimation.targetsUsed.get(i).getFiducialId());
+      }
+      queue.offer(new Vision.VisionMeasurement(estimation.estimatedPose.toPose2d(), estimation.timestampSeconds,
+          Vision.confidenceCalculator(estimation).times(constants.trust), tagMask));
+    }
+    processMillis = (Timer.getFPGATimestamp() - start) * 1000;
+  }
+
+  public void setReferencePose(Pose2d pose) {
+    referencePose = pose;
+  }
+
+  /** Main loop side of the handoff. @return the next measurement, or null */
+  public Vision.VisionMeasurement poll() {
+    return queue.poll();
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getDroppedMeasurements() {
+    return queue.getDropped();
+  }
+
+  /** Total frames processed, duplicates and out of order frames excluded. */
+  public long getFramesIngested() {
+    return framesIngested;
+  }
+
+  /** FPGA time the last frame was processed, or negative infinity if none has been. */
+  public double getLastFrameTime() {
+    return lastFrameTime;
+  }
+
+  /** Worker time spent estimating a pose from the last frame. */
+  public double getProcessMillis() {
+    return processMillis;
+  }
+
+  /**
+   * Total worker time spent reading, decoding and processing frames. Wall clock time, so unlike
+   * {@link #getProcessMillis()} it also advances in simulation with the robot clock paused.
+   */
+  public long getProcessNanos() {
+    return processNanos;
+  }
+
+  public AmbiguityResolver getAmbiguityResolver() {
+    return ambiguityResolver;
+  }
+
+  /** The underlying camera, for attaching a simulated one. */
+  public PhotonCamera getCamera() {
+    return camera;
+  }
+
+  public Transform3d getRobotToCamera() {
+    return constants.robotToCamera;
+  }
+
+  public boolean isConnected() {
+    return camera.isConnected();
+  }
+
+  public String getName() {
+    return constants.name;
+  }
+
+  public String getDashboardName() {
+    return constants.dashboardName;
+  }
+
+  @Override
+  public void close() {
+    if (task != null) {
+      task.cancel(false);
+    }
+    frameSubscriber.close();
+  }
+}
@@ -0,0 +1,205 @@
+package frc.robot.subsystems;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.lib.math.PoseHistory;
+import frc.robot.Constants;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Combines the measurements from all cameras into as few pose estimator insertions as possible.
+ *
+ * <p>Each measurement is compared with the estimator's pose at its timestamp (from
+ * {@link PoseHistory}, which Swerve corrects along with the estimator). Its Mahalanobis distance
+ * uses the measurement's standard deviations plus the estimator's own
+ * {@link Constants.Swerve#STATE_STD_DEVS}. Measurements past
+ * {@link VisionConstants#FUSION_GATE_CHI_SQUARED} are rejected.
+ *
+ * <p>If odometry drifts a long way, every measurement is rejected. Rejected measurements are kept
+ * as a candidate, and once {@link VisionConstants#RESEED_AGREEING_MEASUREMENTS} in a row agree
+ * with each other within the same gate, their fused residual is passed on to re-seed the
+ * estimator. A single wild frame can't do that; it only restarts the candidate.
+ *
+ * <p>Accepted measurements within {@link VisionConstants#FUSION_WINDOW_SECONDS} of each other
+ * come from the same frame on different cameras. Their residuals are averaged, weighted by inverse
+ * variance, and applied to the estimator pose at the newest timestamp. That gives one measurement
+ * with the combined standard deviations. Working with residuals keeps the robot's motion between
+ * slightly offset camera timestamps out of the average.
+ */
+public class VisionFusion {
+  private final PoseHistory history;
+  private final Consumer<Vision.VisionMeasurement> consumer;
+  private final double[] predicted = new double[3];
+
+  /* current group, as inverse variance weights and weighted residual sums per axis */
+  private final Residuals group = new Residuals();
+  private double groupStart;
+  /* rejected measurements that agree with each other, a re-seed candidate */
+  private final Residuals candidate = new Residuals();
+
+  /* statistics */
+  private long accepted = 0;
+  private long rejected = 0;
+  private long reseeds = 0;
+  private int insertionsLastUpdate = 0;
+  private double lastDistance = 0;
+
+  public VisionFusion(PoseHistory history, Consumer<Vision.VisionMeasurement> consumer) {
+    this.history = history;
+    this.consumer = consumer;
+  }
+
+  /** Gates, fuses and passes on {@code measurements}, which must be sorted by timestamp. */
+  public void update(List<Vision.VisionMeasurement> measurements) {
+    insertionsLastUpdate = 0;
+    for (int i = 0; i < measurements.size(); i++) {
+      Vision.VisionMeasurement measurement = measurements.get(i);
+      if (group.size > 0 && measurement.timeStamp - groupStart > VisionConstants.FUSION_WINDOW_SECONDS) {
+        flush();
+      }
+      add(measurement);
+    }
+    flush();
+  }
+
+  private void add(Vision.VisionMeasurement measurement) {
+    if (!history.sample(measurement.timeStamp, predicted)) {
+      // nothing to compare against yet, e.g. right after a reset
+      accepted++;
+      insertionsLastUpdate++;
+      consumer.accept(measurement);
+      return;
+    }
+    double dx = measurement.pose.getX() - predicted[0];
+    double dy = measurement.pose.getY() - predicted[1];
+    double dTheta = MathUtil.angleModulus(measurement.pose.getRotation().getRadians() - predicted[2]);
+
+    double varianceX = square(measurement.dev.get(0, 0));
+    double varianceY = square(measurement.dev.get(1, 0));
+    double varianceTheta = square(measurement.dev.get(2, 0));
+    double distanceSquared =
+        square(dx) / (varianceX + square(Constants.Swerve.STATE_STD_DEVS.get(0, 0)))
+        + square(dy) / (varianceY + square(Constants.Swerve.STATE_STD_DEVS.get(1, 0)))
+        + square(dTheta) / (varianceTheta + square(Constants.Swerve.STATE_STD_DEVS.get(2, 0)));
+    lastDistance = Math.sqrt(distanceSquared);
+
+    if (distanceSquared > VisionConstants.FUSION_GATE_CHI_SQUARED) {
+      rejected++;
+      reject(measurement, dx, dy, dTheta, varianceX, varianceY, varianceTheta);
+      return;
+    }
+    accepted++;
+    // the estimate agrees with vision again, whatever was rejected before was noise
+    candidate.clear();
+
+    if (group.size == 0) {
+      groupStart = measurement.timeStamp;
+    }
+    group.add(measurement, dx, dy, dTheta, varianceX, varianceY, varianceTheta);
+  }
+
+  private void reject(Vision.VisionMeasurement measurement, double dx, double dy, double dTheta,
+      double varianceX, double varianceY, double varianceTheta) {
+    if (candidate.size > 0) {
+      // distance from the candidate's fused residual, with the variance of both
+      double distanceSquared =
+          square(dx - candidate.residualX / candidate.weightX) / (varianceX + 1 / candidate.weightX)
+          + square(dy - candidate.residualY / candidate.weightY) / (varianceY + 1 / candidate.weightY)
+          + square(MathUtil.angleModulus(dTheta - candidate.residualTheta / candidate.weightTheta))
+              / (varianceTheta + 1 / candidate.weightTheta);
+      if (distanceSquared > VisionConstants.FUSION_GATE_CHI_SQUARED) {
+        candidate.clear();
+      }
+    }
+    candidate.add(measurement, dx, dy, dTheta, varianceX, varianceY, varianceTheta);
+    if (candidate.size >= VisionConstants.RESEED_AGREEING_MEASUREMENTS) {
+      // anything accepted earlier goes in first, the re-seed is newer
+      flush();
+      pass(candidate);
+      reseeds++;
+    }
+  }
+
+  private void flush() {
+    if (group.size > 0) {
+      pass(group);
+    }
+  }
+
+  /* Applies the fused residuals to the estimator pose at their newest timestamp and clears them */
+  private void pass(Residuals residuals) {
+    history.sample(residuals.timestamp, predicted);
+    Pose2d pose = new Pose2d(
+        predicted[0] + residuals.residualX / residuals.weightX,
+        predicted[1] + residuals.residualY / residuals.weightY,
+        new Rotation2d(predicted[2] + residuals.residualTheta / residuals.weightTheta));
+    consumer.accept(new Vision.VisionMeasurement(pose, residuals.timestamp,
+        VecBuilder.fill(Math.sqrt(1 / residuals.weightX), Math.sqrt(1 / residuals.weightY),
+            Math.sqrt(1 / residuals.weightTheta)),
+        residuals.tagMask));
+    insertionsLastUpdate++;
+    residuals.clear();
+  }
+
+  private static double square(double value) {
+    return value * value;
+  }
+
+  public long getAccepted() {
+    return accepted;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  /** Times a run of agreeing rejected measurements was passed on to re-seed the estimator. */
+  public long getReseeds() {
+    return reseeds;
+  }
+
+  /** Pose estimator insertions made by the last {@link #update}. */
+  public int getInsertionsLastUpdate() {
+    return insertionsLastUpdate;
+  }
+
+  /** Mahalanobis distance of the most recent measurement that had a pose to compare against. */
+  public double getLastDistance() {
+    return lastDistance;
+  }
+
+  /* Inverse variance weights and weighted residual sums per axis, of measurements being fused */
+  private static final class Residuals {
+    private int size = 0;
+    private double timestamp = Double.NEGATIVE_INFINITY;
+    private long tagMask = 0;
+    private double weightX, weightY, weightTheta;
+    private double residualX, residualY, residualTheta;
+
+    private void add(Vision.VisionMeasurement measurement, double dx, double dy, double dTheta,
+        double varianceX, double varianceY, double varianceTheta) {
+      size++;
+      timestamp = Math.max(timestamp, measurement.timeStamp);
+      tagMask |= measurement.tagMask;
+      weightX += 1 / varianceX;
+      weightY += 1 / varianceY;
+      weightTheta += 1 / varianceTheta;
+      residualX += dx / varianceX;
+      residualY += dy / varianceY;
+      residualTheta += dTheta / varianceTheta;
+    }
+
+    private void clear() {
+      size = 0;
+      timestamp = Double.NEGATIVE_INFINITY;
+      tagMask = 0;
+      weightX = weightY = weightTheta = 0;
+      residualX = residualY = residualTheta = 0;
+    }
+  }
+}
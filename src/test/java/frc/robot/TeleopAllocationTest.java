@@ -0,0 +1,172 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.lib.FastLoop;
+import frc.lib.LoopProfiler;
+import frc.robot.Constants.FastLoopConstants;
+import frc.robot.sim.SwerveDriveSim;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Allocation regression test for the teleop loop. Boots the robot under HAL simulation, drives it
+ * with a synthetic driver controller and counts the bytes the robot thread allocates per loop with
+ * the JVM's per-thread allocation counter. Fails if the mean is over {@link #BUDGET_BYTES_PER_LOOP}.
+ *
+ * <p>Only the robot's own code is counted: the fast loop ticks, teleopPeriodic and robotPeriodic.
+ * The synthetic controller, driver station updates and dashboard flush around them aren't, and
+ * neither is the drivetrain physics ({@link SwerveDriveSim}), which runs inside the scheduler.
+ * The odometry update ({@link Swerve#ODOMETRY_PROFILER_NAME}) is reported but not counted either:
+ * WPILib's pose estimator and Field2d allocate on every sample, see SwerveAllocationTest.
+ *
+ * <p>The breakdown comes from the {@link LoopProfiler}, so every subsystem, command, the
+ * SensorFrame and the FastLoop show up by name; whatever else robotPeriodic does (trigger polling,
+ * telemetry) is reported as unattributed.
+ */
+class TeleopAllocationTest {
+  private static final int WARMUP_LOOPS = 2_000;
+  private static final int LOOPS = 10_000;
+  private static final double BUDGET_BYTES_PER_LOOP = 256;
+  /* Entries measured but not counted against the budget */
+  private static final Set<String> EXCLUDED = Set.of(SwerveDriveSim.PROFILER_NAME, Swerve.ODOMETRY_PROFILER_NAME);
+  /* Entries timed inside another entry, whose bytes that entry's total already includes */
+  private static final Set<String> NESTED = Set.of(Swerve.ODOMETRY_PROFILER_NAME);
+
+  private static Robot robot;
+  private static XboxControllerSim driver;
+
+  @BeforeAll
+  static void setUp() {
+    assertTrue(HAL.initialize(500, 0), "HAL failed to initialize");
+    SimHooks.pauseTiming();
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setTest(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    robot = new Robot();
+    robot.robotInit();
+    robot.teleopInit();
+    LoopProfiler.setEnabled(true);
+    driver = new XboxControllerSim(0);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    SimHooks.resumeTiming();
+  }
+
+  @Test
+  void teleopLoopStaysWithinAllocationBudget() {
+    for (int i = 0; i < WARMUP_LOOPS; i++) {
+      step(i);
+    }
+    LoopProfiler.resetAllocations();
+    long robotBytes = 0;
+    for (int i = 0; i < LOOPS; i++) {
+      robotBytes += step(WARMUP_LOOPS + i);
+    }
+    long total = robotBytes - excludedBytes();
+
+    double perLoop = total / (double) LOOPS;
+    String report = report(total);
+    System.out.print(report);
+    assertTrue(perLoop <= BUDGET_BYTES_PER_LOOP, report);
+  }
+
+  /**
+   * One 20ms loop: fast ticks for the period, then what TimedRobot does each loop in teleop.
+   *
+   * @return bytes the robot code allocated
+   */
+  private static long step(int loop) {
+    double t = loop * TimedRobot.kDefaultPeriod;
+    // slow sweeps, so the drive path sees changing, saturating and reversing inputs
+    driver.setLeftY(0.9 * Math.sin(t * 0.7));
+    driver.setLeftX(0.9 * Math.sin(t * 1.1));
+    driver.setRightX(0.6 * Math.sin(t * 0.4));
+    DriverStationSim.notifyNewData();
+
+    long bytes = 0;
+    for (double elapsed = 0; elapsed < TimedRobot.kDefaultPeriod - 1e-9;
+        elapsed += FastLoopConstants.PERIOD_SECONDS) {
+      SimHooks.stepTiming(FastLoopConstants.PERIOD_SECONDS);
+      long start = LoopProfiler.allocatedBytes();
+      FastLoop.tick();
+      bytes += LoopProfiler.allocatedBytes() - start;
+    }
+    DriverStation.refreshData();
+    long start = LoopProfiler.allocatedBytes();
+    robot.teleopPeriodic();
+    robot.robotPeriodic();
+    bytes += LoopProfiler.allocatedBytes() - start;
+    robot.simulationPeriodic();
+    SmartDashboard.updateValues();
+    return bytes;
+  }
+
+  /* Bytes allocated by the physics simulation, which isn't robot code, and by the odometry update */
+  private static long excludedBytes() {
+    long bytes = 0;
+    for (String name : EXCLUDED) {
+      LoopProfiler.Entry entry = find(name);
+      bytes += entry == null ? 0 : entry.getTotalBytes();
+    }
+    return bytes;
+  }
+
+  private static LoopProfiler.Entry find(String name) {
+    for (LoopProfiler.Entry entry : LoopProfiler.getEntries()) {
+      if (entry.getName().equals(name)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private static String report(long total) {
+    List<LoopProfiler.Entry> entries = new ArrayList<>(LoopProfiler.getEntries());
+    entries.sort(Comparator.comparingLong(LoopProfiler.Entry::getTotalBytes).reversed());
+
+    StringBuilder report = new StringBuilder(String.format("Teleop allocation over %d loops%n", LOOPS));
+    report.append(String.format("  %-32s %12s %12s%n", "", "bytes/loop", "bytes/call"));
+    long attributed = 0;
+    for (LoopProfiler.Entry entry : entries) {
+      if (entry.getTotalCalls() == 0) {
+        continue;
+      }
+      boolean excluded = EXCLUDED.contains(entry.getName());
+      boolean nested = NESTED.contains(entry.getName());
+      if (excluded && nested) {
+        attributed -= entry.getTotalBytes();
+      } else if (!excluded && !nested) {
+        attributed += entry.getTotalBytes();
+      }
+      report.append(String.format("  %-32s %12.1f %12.1f%s%n", entry.getName(),
+          entry.getTotalBytes() / (double) LOOPS,
+          entry.getTotalBytes() / (double) entry.getTotalCalls(), excluded ? "   not counted" : ""));
+    }
+    report.append(String.format("  %-32s %12.1f%n", "unattributed", (total - attributed) / (double) LOOPS));
+    double perLoop = total / (double) LOOPS;
+    report.append(String.format("  %-32s %12.1f   budget %.0f%s%n", "total", perLoop, BUDGET_BYTES_PER_LOOP,
+        perLoop <= BUDGET_BYTES_PER_LOOP ? "" : "  OVER BUDGET"));
+    return report.toString();
+  }
+}
@@ -0,0 +1,67 @@
+package frc.robot.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.lib.math.HeadingHistory;
+import frc.lib.math.PoseHistory;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.subsystems.Vision;
+
+/**
+ * {@link Vision} running against {@link VisionSim} under HAL simulation with the clock paused, the
+ * robot circling in front of the blue speaker with its front camera on tags 7 and 8. Each test
+ * class builds its own; test classes run in their own JVM.
+ *
+ * <p>The gyro and pose histories are fed the ground truth, so gating and ambiguity resolution see
+ * a perfect drivetrain and only the vision error is measured.
+ */
+final class VisionSimFixture {
+    final PoseHistory poseHistory = new PoseHistory(VisionConstants.SIM_TRUTH_HISTORY_SIZE);
+    final HeadingHistory gyroHistory = new HeadingHistory(VisionConstants.SIM_TRUTH_HISTORY_SIZE);
+    final List<Vision.VisionMeasurement> fused = new ArrayList<>();
+    final Vision vision;
+    private Pose2d truth = new Pose2d();
+
+    VisionSimFixture() {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("HAL failed to initialize");
+        }
+        SimHooks.pauseTiming();
+        vision = new Vision(fused::add, () -> truth, poseHistory, gyroHistory);
+        vision.enableSimulation(() -> truth);
+    }
+
+    /** Advances the clock, moves the robot and renders the simulated cameras. */
+    void step(double seconds) {
+        SimHooks.stepTiming(seconds);
+        double now = Timer.getFPGATimestamp();
+        // slow circle 2.5 m out from the speaker, facing it
+        double angle = 0.5 * now;
+        truth = new Pose2d(2.5 + 0.5 * Math.cos(angle), 5.3 + 0.5 * Math.sin(angle),
+                Rotation2d.fromRadians(Math.PI + 0.2 * Math.sin(angle)));
+        poseHistory.add(now, truth);
+        gyroHistory.add(now, truth.getRotation().getRadians());
+        vision.simulationPeriodic();
+    }
+
+    /** Waits until the camera workers have taken every rendered frame. */
+    void awaitWorkers() throws InterruptedException {
+        long ingested = vision.getFramesIngested();
+        long last;
+        do {
+            last = ingested;
+            Thread.sleep(5 * VisionConstants.CAMERA_POLL_PERIOD_MS);
+            ingested = vision.getFramesIngested();
+        } while (ingested != last);
+    }
+
+    void close() {
+        SimHooks.resumeTiming();
+    }
+}
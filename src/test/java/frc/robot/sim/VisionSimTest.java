@@ -0,0 +1,54 @@
+package frc.robot.sim;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.lib.SensorFrame;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Runs {@link frc.robot.subsystems.Vision} against {@link VisionSim} and checks its measurements
+ * against the ground truth. See {@link VisionSimFixture} for the setup.
+ */
+class VisionSimTest {
+    private static final int LOOPS = 300;
+    private static final double MAX_RMS_ERROR_METERS = 0.10;
+    private static final double MAX_ERROR_METERS = 0.35;
+
+    private static VisionSimFixture fixture;
+
+    @BeforeAll
+    static void setUp() {
+        fixture = new VisionSimFixture();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        fixture.close();
+    }
+
+    @Test
+    void measurementsMatchGroundTruth() throws InterruptedException {
+        for (int i = 0; i < LOOPS; i++) {
+            fixture.step(TimedRobot.kDefaultPeriod);
+            // give the camera workers a couple of polls at the new frame
+            Thread.sleep(3 * VisionConstants.CAMERA_POLL_PERIOD_MS);
+            SensorFrame.update();
+            fixture.vision.periodic();
+        }
+        VisionSim sim = fixture.vision.getSimulation();
+        System.out.printf("Vision sim over %d loops: %d measurements, %d fused, RMS error %.3f m, max %.3f m%n",
+            LOOPS, sim.getScored(), fixture.fused.size(), sim.getRmsError(), sim.getMaxError());
+
+        double frames = LOOPS * TimedRobot.kDefaultPeriod * VisionConstants.SIM_FPS;
+        assertTrue(sim.getScored() > frames / 2, "too few measurements: " + sim.getScored());
+        assertFalse(fixture.fused.isEmpty(), "nothing passed fusion");
+        assertTrue(sim.getRmsError() <= MAX_RMS_ERROR_METERS, "RMS error " + sim.getRmsError() + " m");
+        assertTrue(sim.getMaxError() <= MAX_ERROR_METERS, "max error " + sim.getMaxError() + " m");
+    }
+}
@@ -0,0 +1,60 @@
+package frc.robot.sim;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Measures how many frames per second the {@link frc.robot.subsystems.Vision} workers can process
+ * on this machine, from the worker time spent on each frame. Rendering the simulated frames and
+ * the workers' polling delay aren't part of it. See {@link VisionSimFixture} for the setup.
+ */
+class VisionThroughputTest {
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 600;
+
+    private static VisionSimFixture fixture;
+
+    @BeforeAll
+    static void setUp() {
+        fixture = new VisionSimFixture();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        fixture.close();
+    }
+
+    @Test
+    void workersKeepUpWithTheCameras() throws InterruptedException {
+        render(WARMUP_FRAMES);
+        long framesBefore = fixture.vision.getFramesIngested();
+        long nanosBefore = fixture.vision.getProcessNanos();
+        render(FRAMES);
+        long frames = fixture.vision.getFramesIngested() - framesBefore;
+        long nanos = fixture.vision.getProcessNanos() - nanosBefore;
+
+        // a camera is only ever on one worker, so no more workers than cameras are busy at once
+        int busyWorkers = Math.min(VisionConstants.WORKER_THREADS, VisionConstants.CAMERAS.length);
+        double millisPerFrame = nanos / 1e6 / frames;
+        double framesPerSecond = busyWorkers * 1e3 / millisPerFrame;
+        double required = VisionConstants.SIM_FPS * VisionConstants.CAMERAS.length;
+        System.out.printf("Vision workers: %d frames, %.3f ms each, %.0f frames/s on %d workers (cameras need %.0f)%n",
+            frames, millisPerFrame, framesPerSecond, busyWorkers, required);
+        assertTrue(frames > 0, "no frames processed");
+        assertTrue(framesPerSecond >= required, "the workers can't keep up with the cameras: "
+            + framesPerSecond + " frames/s");
+    }
+
+    /* One frame per camera per step, then waits for the workers to take them all */
+    private static void render(int frames) throws InterruptedException {
+        for (int i = 0; i < frames; i++) {
+            fixture.step(1.001 / VisionConstants.SIM_FPS);
+        }
+        fixture.awaitWorkers();
+    }
+}
@@ -0,0 +1,94 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.kauailabs.navx.frc.AHRS;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.SPI.Port;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.lib.LoopProfiler;
+import frc.robot.Constants;
+import frc.robot.commands.TeleopSwerve;
+
+/**
+ * A teleop cycle, {@link TeleopSwerve#execute()} then {@link Swerve#periodic()}, allocates nothing
+ * outside the odometry update. The odometry update (pose estimator and Field2d, both WPILib) is
+ * measured through its {@link Swerve#ODOMETRY_PROFILER_NAME} profiler entry and reported.
+ */
+class SwerveAllocationTest {
+  private static final int WARMUP_LOOPS = 5_000;
+  private static final int LOOPS = 2_000;
+
+  /* Stick inputs, read by the command's suppliers */
+  private static double translation;
+  private static double strafe;
+  private static double rotation;
+
+  private static Swerve swerve;
+  private static TeleopSwerve teleop;
+
+  @BeforeAll
+  static void setUp() {
+    assertTrue(HAL.initialize(500, 0), "HAL failed to initialize");
+    SimHooks.pauseTiming();
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    swerve = new Swerve(new AHRS(Port.kMXP, Constants.Swerve.NAVX_UPDATE_RATE_HZ));
+    teleop = new TeleopSwerve(swerve, () -> translation, () -> strafe, () -> rotation, () -> false);
+    teleop.initialize();
+    LoopProfiler.setEnabled(true);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    LoopProfiler.setEnabled(false);
+    SimHooks.resumeTiming();
+  }
+
+  @Test
+  void teleopCycleAllocatesNothingOutsideOdometry() {
+    for (int i = 0; i < WARMUP_LOOPS; i++) {
+      cycle(i);
+    }
+    LoopProfiler.resetAllocations();
+    long total = 0;
+    for (int i = 0; i < LOOPS; i++) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      setSticks(WARMUP_LOOPS + i);
+      long start = LoopProfiler.allocatedBytes();
+      teleop.execute();
+      swerve.periodic();
+      total += LoopProfiler.allocatedBytes() - start;
+    }
+    long odometry = LoopProfiler.entry(Swerve.ODOMETRY_PROFILER_NAME).getTotalBytes();
+    System.out.printf("Teleop cycle over %d loops: %.1f bytes/loop in the odometry update, %.1f elsewhere%n",
+        LOOPS, odometry / (double) LOOPS, (total - odometry) / (double) LOOPS);
+    assertEquals(0, total - odometry, "bytes allocated by the teleop cycle outside the odometry update");
+  }
+
+  private static void cycle(int loop) {
+    SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+    setSticks(loop);
+    teleop.execute();
+    swerve.periodic();
+  }
+
+  /* Slow sweeps, so the drive path sees changing, saturating and reversing inputs */
+  private static void setSticks(int loop) {
+    double t = loop * TimedRobot.kDefaultPeriod;
+    translation = 0.9 * Math.sin(t * 0.7);
+    strafe = 0.9 * Math.sin(t * 1.1);
+    rotation = 0.6 * Math.sin(t * 0.4);
+  }
+}